@@ -0,0 +1,76 @@
+import java.util.Arrays;
+
+/**
+ * A unique field of a struct array: no two instances may take the same value.
+ *
+ * Fixed values are removed from every other variable until nothing new gets fixed, then a
+ * pigeonhole check fails the constraint when fewer values remain than variables.
+ */
+public class AllDifferentPropagator extends Propagator {
+    private final long[] union;
+    private final int[] stack;
+    private final boolean[] done;
+
+    public AllDifferentPropagator(int[] vars, int maxDomainSize) {
+        super(PRIORITY_GLOBAL, vars, true);
+        this.union = new long[(maxDomainSize + 63) >>> 6];
+        this.stack = new int[vars.length];
+        this.done = new boolean[vars.length];
+    }
+
+    @Override
+    public boolean propagate(DomainStore s) {
+        int top = 0;
+        for (int i = 0; i < vars.length; i++) {
+            done[i] = false;
+            if (s.isFixed(vars[i])) stack[top++] = i;
+        }
+
+        while (top > 0) {
+            int i = stack[--top];
+            if (done[i]) continue;
+            done[i] = true;
+            int v = s.value(vars[i]);
+            for (int j = 0; j < vars.length; j++) {
+                if (j == i) continue;
+                int other = vars[j];
+                if (!s.contains(other, v)) continue;
+                if (!s.remove(other, v)) return false;
+                if (s.isFixed(other) && !done[j]) stack[top++] = j;
+            }
+        }
+
+        // pigeonhole: the variables must still cover vars.length distinct values
+        Arrays.fill(union, 0L);
+        for (int var : vars) {
+            int words = Math.min(union.length, s.wordCount(var));
+            for (int w = 0; w < words; w++) union[w] |= s.word(var, w);
+        }
+        int count = 0;
+        for (long w : union) count += Long.bitCount(w);
+        return count >= vars.length;
+    }
+
+    @Override
+    public boolean isSatisfied(int[] values) {
+        for (int i = 0; i < vars.length; i++)
+            for (int j = i + 1; j < vars.length; j++)
+                if (values[vars[i]] == values[vars[j]]) return false;
+        return true;
+    }
+
+    // one unit per clashing pair, so local search can tell "almost" from "far off"
+    @Override
+    public int violation(int[] values) {
+        int clashes = 0;
+        for (int i = 0; i < vars.length; i++)
+            for (int j = i + 1; j < vars.length; j++)
+                if (values[vars[i]] == values[vars[j]]) clashes++;
+        return clashes;
+    }
+
+    @Override
+    public String toString() {
+        return "alldifferent" + Arrays.toString(vars);
+    }
+}
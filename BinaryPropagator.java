@@ -0,0 +1,30 @@
+/**
+ * A plain rule such as {@code Parties[0].b = Parties[2].g} or {@code Stories[1].a != Bob}.
+ */
+public class BinaryPropagator extends Propagator {
+    final Literal literal;
+
+    public BinaryPropagator(Literal literal) {
+        super(PRIORITY_BINARY, watched(literal), true);
+        this.literal = literal;
+    }
+
+    private static int[] watched(Literal l) {
+        return (l.isConstant() || l.x == l.y) ? new int[] { l.x } : new int[] { l.x, l.y };
+    }
+
+    @Override
+    public boolean propagate(DomainStore s) {
+        return literal.enforce(s);
+    }
+
+    @Override
+    public boolean isSatisfied(int[] values) {
+        return literal.holds(values);
+    }
+
+    @Override
+    public String toString() {
+        return literal.toString();
+    }
+}
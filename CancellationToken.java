@@ -0,0 +1,15 @@
+/**
+ * Lets another thread stop a running Interpret call: pass it in SolveOptions.cancellation and
+ * call cancel(). The search notices within a few hundred nodes and reports CANCELLED.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled = false;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.Arrays;
+
+/**
+ * Links a permutation-shaped unique column to its inverse: {@code primal[i] = v} exactly when
+ * {@code dual[v] = i}. The dual variable of a value answers "which instance has it".
+ *
+ * One pass removes i from dual[v] wherever v left primal[i], then v from primal[i] wherever
+ * i left dual[v]; after that both sides agree, so the propagator is idempotent.
+ */
+public class ChannelPropagator extends Propagator {
+    final int[] primal;
+    final int[] dual;
+
+    public ChannelPropagator(int[] primal, int[] dual) {
+        super(PRIORITY_GLOBAL, concat(primal, dual), true);
+        this.primal = primal;
+        this.dual = dual;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        System.arraycopy(a, 0, out, 0, a.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    @Override
+    public boolean propagate(DomainStore s) {
+        for (int i = 0; i < primal.length; i++)
+            for (int v = 0; v < dual.length; v++)
+                if (!s.contains(primal[i], v) && s.contains(dual[v], i) && !s.remove(dual[v], i))
+                    return false;
+
+        for (int v = 0; v < dual.length; v++)
+            for (int i = 0; i < primal.length; i++)
+                if (!s.contains(dual[v], i) && s.contains(primal[i], v) && !s.remove(primal[i], v))
+                    return false;
+        return true;
+    }
+
+    @Override
+    public boolean isSatisfied(int[] values) {
+        for (int i = 0; i < primal.length; i++) {
+            int v = values[primal[i]];
+            if (v < 0 || v >= dual.length || values[dual[v]] != i) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "channel" + Arrays.toString(primal);
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+/**
+ * Knuth's Algorithm X over a dancing-links matrix, with all links kept in int arrays.
+ *
+ * Columns are items that every solution must cover exactly once; rows are added as lists of
+ * column indices. The listener filters rows as they are selected (for constraints that are
+ * not columns) and receives every complete cover.
+ */
+public class DancingLinks {
+
+    public interface Listener {
+        // a row is about to enter the partial solution; false rejects it
+        boolean select(int row);
+
+        // the row leaves the partial solution again (only called after select returned true)
+        void unselect(int row);
+
+        // every column is covered; true stops the search
+        boolean solution(int[] rows, int count);
+    }
+
+    private final int columns;
+
+    // node 0 is the root, nodes 1..columns the column headers, row nodes follow
+    private int[] left, right, up, down, column, rowOf;
+    private final int[] size;
+    private int nodes;
+    private int rows = 0;
+
+    private int[] partial;
+    private long updates = 0;
+    private SearchLimits limits = null;
+
+    public DancingLinks(int columns) {
+        this.columns = columns;
+        int cap = columns + 1 + 64;
+        left = new int[cap];
+        right = new int[cap];
+        up = new int[cap];
+        down = new int[cap];
+        column = new int[cap];
+        rowOf = new int[cap];
+        size = new int[columns + 1];
+
+        for (int c = 0; c <= columns; c++) {
+            left[c] = (c == 0) ? columns : c - 1;
+            right[c] = (c == columns) ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+            rowOf[c] = -1;
+        }
+        nodes = columns + 1;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public long updates() {
+        return updates;
+    }
+
+    // stop as if the listener had asked to once one of the run's limits is hit
+    public void setLimits(SearchLimits limits) {
+        this.limits = limits;
+    }
+
+    // Add a row covering the given columns (0-based); returns the row id
+    public int addRow(int... cols) {
+        int row = rows++;
+        int first = -1;
+        for (int c : cols) {
+            int col = c + 1;
+            if (nodes == left.length) grow();
+            int x = nodes++;
+            column[x] = col;
+            rowOf[x] = row;
+
+            // append at the bottom of the column
+            up[x] = up[col];
+            down[x] = col;
+            down[up[col]] = x;
+            up[col] = x;
+            size[col]++;
+
+            // append at the end of the row
+            if (first < 0) {
+                first = x;
+                left[x] = x;
+                right[x] = x;
+            } else {
+                left[x] = left[first];
+                right[x] = first;
+                right[left[first]] = x;
+                left[first] = x;
+            }
+        }
+        return row;
+    }
+
+    // Enumerate exact covers until the listener asks to stop; true when it did
+    public boolean solve(Listener listener) {
+        partial = new int[columns + 1];
+        return search(listener, 0);
+    }
+
+    private boolean search(Listener listener, int depth) {
+        if (right[0] == 0) return listener.solution(partial, depth);
+        if (limits != null && limits.node()) return true;
+
+        // the column with the fewest rows left
+        int best = right[0];
+        for (int c = right[best]; c != 0; c = right[c])
+            if (size[c] < size[best]) best = c;
+        if (size[best] == 0) return false;
+
+        cover(best);
+        for (int r = down[best]; r != best; r = down[r]) {
+            int row = rowOf[r];
+            if (!listener.select(row)) continue;
+
+            partial[depth] = row;
+            for (int j = right[r]; j != r; j = right[j]) cover(column[j]);
+            boolean stop = search(listener, depth + 1);
+            for (int j = left[r]; j != r; j = left[j]) uncover(column[j]);
+            listener.unselect(row);
+
+            if (stop) {
+                uncover(best);
+                return true;
+            }
+        }
+        uncover(best);
+        return false;
+    }
+
+    private void cover(int c) {
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                size[column[j]]--;
+                updates++;
+            }
+        }
+    }
+
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                size[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+    }
+
+    private void grow() {
+        int cap = left.length * 2;
+        left = Arrays.copyOf(left, cap);
+        right = Arrays.copyOf(right, cap);
+        up = Arrays.copyOf(up, cap);
+        down = Arrays.copyOf(down, cap);
+        column = Arrays.copyOf(column, cap);
+        rowOf = Arrays.copyOf(rowOf, cap);
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Current domains of all solver variables, one bitset per variable packed into a single
+ * long array, plus the assigned value of each variable (-1 while more than one value is left).
+ *
+ * Variables are dense ints 0..n-1 and values are indices into the variable's choice list.
+ * Every change goes through the trail, so checkpoint()/restore() undo domain reductions
+ * and assignments without copying anything.
+ */
+public class DomainStore {
+    private final int[] offset;      // first word of each variable
+    private final int[] wordCount;   // number of words of each variable
+    private final int[] domainSize;  // initial number of values
+    private final long[] words;
+    private final int[] value;
+    private final int[] wordStamp;   // trail stamp of the last save of each word
+    private final Trail trail;
+
+    // variables whose domain changed since the propagation engine last looked
+    private final int[] changed;
+    private final boolean[] isChanged;
+    private int changedCount = 0;
+
+    public DomainStore(int[] sizes) {
+        int n = sizes.length;
+        offset = new int[n];
+        wordCount = new int[n];
+        domainSize = sizes.clone();
+        value = new int[n];
+
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            offset[i] = total;
+            wordCount[i] = (sizes[i] + 63) >>> 6;
+            total += wordCount[i];
+        }
+        words = new long[total];
+        wordStamp = new int[total];
+        changed = new int[n];
+        isChanged = new boolean[n];
+
+        for (int i = 0; i < n; i++) {
+            int size = sizes[i];
+            for (int w = 0; w < wordCount[i]; w++) {
+                int bits = Math.min(64, size - (w << 6));
+                words[offset[i] + w] = (bits == 64) ? -1L : (1L << bits) - 1;
+            }
+            value[i] = (size == 1) ? 0 : -1;
+        }
+
+        trail = new Trail(total * 4);
+    }
+
+    public int variableCount() {
+        return offset.length;
+    }
+
+    public int initialSize(int var) {
+        return domainSize[var];
+    }
+
+    public Trail trail() {
+        return trail;
+    }
+
+    // ---------- queries ----------
+    public int size(int var) {
+        int count = 0;
+        int base = offset[var];
+        for (int w = 0; w < wordCount[var]; w++) count += Long.bitCount(words[base + w]);
+        return count;
+    }
+
+    public boolean contains(int var, int v) {
+        if (v < 0 || v >= domainSize[var]) return false;
+        return (words[offset[var] + (v >>> 6)] & (1L << v)) != 0;
+    }
+
+    public boolean isFixed(int var) {
+        return value[var] >= 0;
+    }
+
+    // assigned value, or -1 while the domain still has several values
+    public int value(int var) {
+        return value[var];
+    }
+
+    public int wordCount(int var) {
+        return wordCount[var];
+    }
+
+    // raw bits of one word of a variable's domain (value v lives in word v / 64, bit v % 64)
+    public long word(int var, int w) {
+        return words[offset[var] + w];
+    }
+
+    public int min(int var) {
+        return next(var, 0);
+    }
+
+    // smallest value >= from still in the domain, or -1
+    public int next(int var, int from) {
+        if (from < 0) from = 0;
+        if (from >= domainSize[var]) return -1;
+        int base = offset[var];
+        int w = from >>> 6;
+        long bits = words[base + w] & (-1L << from);
+        while (true) {
+            if (bits != 0) return (w << 6) + Long.numberOfTrailingZeros(bits);
+            if (++w >= wordCount[var]) return -1;
+            bits = words[base + w];
+        }
+    }
+
+    // ---------- changes ----------
+
+    // Remove one value; false when the domain becomes empty
+    public boolean remove(int var, int v) {
+        if (!contains(var, v)) return size(var) > 0;
+        int w = offset[var] + (v >>> 6);
+        save(var, w);
+        words[w] &= ~(1L << v);
+        markChanged(var);
+
+        int left = size(var);
+        if (left == 0) return false;
+        if (left == 1) value[var] = min(var);
+        return true;
+    }
+
+    // Reduce the domain to exactly {v}; false when v is not in the domain
+    public boolean assign(int var, int v) {
+        if (!contains(var, v)) return false;
+        if (value[var] == v) return true;
+
+        int base = offset[var];
+        int target = base + (v >>> 6);
+        for (int w = base; w < base + wordCount[var]; w++) {
+            long keep = (w == target) ? (1L << v) : 0L;
+            if (words[w] != keep) {
+                save(var, w);
+                words[w] = keep;
+            }
+        }
+        value[var] = v;
+        markChanged(var);
+        return true;
+    }
+
+    // ---------- change notification ----------
+
+    // next variable whose domain changed, or -1 when there is none
+    public int pollChanged() {
+        if (changedCount == 0) return -1;
+        int var = changed[--changedCount];
+        isChanged[var] = false;
+        return var;
+    }
+
+    public void clearChanged() {
+        while (changedCount > 0) isChanged[changed[--changedCount]] = false;
+    }
+
+    private void markChanged(int var) {
+        if (isChanged[var]) return;
+        isChanged[var] = true;
+        changed[changedCount++] = var;
+    }
+
+    // ---------- backtracking ----------
+    public int checkpoint() {
+        return trail.checkpoint();
+    }
+
+    public void restore(int level) {
+        trail.restore(level, this);
+    }
+
+    // called by the trail while unwinding
+    void undo(int var, int word, long oldWord, int oldValue) {
+        words[word] = oldWord;
+        value[var] = oldValue;
+    }
+
+    // changes made before the first checkpoint are permanent and never logged
+    private void save(int var, int word) {
+        if (trail.depth() == 0) return;
+        int stamp = trail.stamp();
+        if (wordStamp[word] == stamp) return;
+        wordStamp[word] = stamp;
+        trail.save(var, word, words[word], value[var]);
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A block rule whose head is {@code field = constant} on a channeled column, such as
+ * {@code Stories.a = Alice => Stories.h != Red}. Only the instance holding the constant can
+ * fire the rule, so instead of one implication per index this watches the dual variable
+ * {@code where} (the position of the constant) and applies {@code thens[where]} directly.
+ */
+public class ElementImplicationPropagator extends Propagator {
+    final int where;
+    final Literal[][] thens;   // thens[i] = the rule's then-literals bound to instance i
+
+    public ElementImplicationPropagator(int where, Literal[][] thens) {
+        super(PRIORITY_IMPLICATION, watched(where, thens), false);
+        this.where = where;
+        this.thens = thens;
+    }
+
+    private static int[] watched(int where, Literal[][] thens) {
+        Set<Integer> vars = new LinkedHashSet<>();
+        vars.add(where);
+        for (Literal[] row : thens) {
+            for (Literal l : row) {
+                vars.add(l.x);
+                if (!l.isConstant()) vars.add(l.y);
+            }
+        }
+        int[] out = new int[vars.size()];
+        int i = 0;
+        for (int v : vars) out[i++] = v;
+        return out;
+    }
+
+    @Override
+    public boolean propagate(DomainStore s) {
+        if (s.isFixed(where)) {
+            for (Literal l : thens[s.value(where)])
+                if (!l.enforce(s)) return false;
+            return true;
+        }
+
+        // an instance whose then-literals already fail cannot hold the constant
+        for (int i = s.min(where); i >= 0; i = s.next(where, i + 1)) {
+            for (Literal l : thens[i]) {
+                if (l.status(s) == Literal.DISENTAILED) {
+                    if (!s.remove(where, i)) return false;
+                    break;
+                }
+            }
+        }
+        if (s.isFixed(where)) {
+            for (Literal l : thens[s.value(where)])
+                if (!l.enforce(s)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isSatisfied(int[] values) {
+        int i = values[where];
+        if (i < 0 || i >= thens.length) return false;
+        for (Literal l : thens[i])
+            if (!l.holds(values)) return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "element(v" + where + ")";
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * One instance of a block rule, {@code head => then1, then2, ...}, with the struct index
+ * already bound. When the head is entailed every then-literal is enforced; when some
+ * then-literal is disentailed the head is forced false.
+ */
+public class ImplicationPropagator extends Propagator {
+    final Literal head;
+    final Literal[] thens;
+
+    public ImplicationPropagator(Literal head, Literal[] thens) {
+        super(PRIORITY_IMPLICATION, watched(head, thens), false);
+        this.head = head;
+        this.thens = thens;
+    }
+
+    private static int[] watched(Literal head, Literal[] thens) {
+        Set<Integer> vars = new LinkedHashSet<>();
+        addVars(vars, head);
+        for (Literal l : thens) addVars(vars, l);
+        int[] out = new int[vars.size()];
+        int i = 0;
+        for (int v : vars) out[i++] = v;
+        return out;
+    }
+
+    private static void addVars(Set<Integer> vars, Literal l) {
+        vars.add(l.x);
+        if (!l.isConstant()) vars.add(l.y);
+    }
+
+    @Override
+    public boolean propagate(DomainStore s) {
+        int h = head.status(s);
+        if (h == Literal.DISENTAILED) return true;
+
+        if (h == Literal.ENTAILED) {
+            for (Literal l : thens)
+                if (!l.enforce(s)) return false;
+            return true;
+        }
+
+        for (Literal l : thens)
+            if (l.status(s) == Literal.DISENTAILED) return head.enforceNegation(s);
+        return true;
+    }
+
+    @Override
+    public boolean isSatisfied(int[] values) {
+        if (!head.holds(values)) return true;
+        for (Literal l : thens)
+            if (!l.holds(values)) return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(head.toString()).append(" =>");
+        for (Literal l : thens) sb.append(' ').append(l);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,164 @@
+import AST.*;
+
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Lexes and parses a program again after a text edit, redoing only the top-level items the edit
+ * touches. The result has the tokens and tree a full lex and parse of the edited text would give.
+ *
+ * The edited region grows to whole lines, then out to the nearest top-level line starts before
+ * and after it (the chunk boundaries of ParallelLexer). At both ends the lexer is at indent 0
+ * with every block closed, so a fresh Lexer over just that text gives the tokens the full lex
+ * would give there. The old tokens before it are copied as they are, the ones after it with
+ * their slices and lines moved by the edit. Only the new region is parsed, through
+ * NushaFall2025Parser.parseRange; the old tree's Definition, Variable and Rule nodes before and
+ * after it are reused.
+ *
+ * New names are interned into the previous symbol table, so ids stay valid for reused tokens but
+ * may differ from a fresh lex, and names no longer used stay in the table. When the previous
+ * program stopped at a failed rule, or the new region fails to lex or parse, the new tokens or
+ * text are parsed in full instead, which gives the same truncation or exception as before.
+ */
+public final class IncrementalParser {
+
+    // a program's text with its tokens and tree, to pass to the next edit
+    public static final class Snapshot {
+        public final CharSequence source;
+        public final TokenBuffer tokens;
+        public final Optional<Nusha> tree;
+        final boolean complete;      // every item parsed; no failed rule cut the program short
+
+        Snapshot(CharSequence source, TokenBuffer tokens, Optional<Nusha> tree, boolean complete) {
+            this.source = source;
+            this.tokens = tokens;
+            this.tree = tree;
+            this.complete = complete;
+        }
+    }
+
+    // lex and parse all of source
+    public Snapshot parse(CharSequence source) throws SyntaxErrorException {
+        return parseAll(source, new Lexer(new TextManager(source)).LexBuffer());
+    }
+
+    // previous.source with [offset, offset + length) replaced by replacement
+    public Snapshot edit(Snapshot previous, int offset, int length, CharSequence replacement) throws SyntaxErrorException {
+        CharSequence old = previous.source;
+        Objects.checkFromIndexSize(offset, length, old.length());
+        String source = new StringBuilder(old.length() - length + replacement.length())
+                .append(old, 0, offset).append(replacement).append(old, offset + length, old.length())
+                .toString();
+        TokenBuffer oldTokens = previous.tokens;
+        SymbolTable symbols = oldTokens.symbolTable();
+        if (!previous.complete || !previous.tree.isPresent() || symbols == null) return parse(source);
+
+        // old text [lo, hi): from the top-level line before the edited line to the next one after
+        int lineStart = offset;
+        while (lineStart > 0 && old.charAt(lineStart - 1) != '\n') lineStart--;
+        int lo = lineStart - 1;
+        while (lo > 0 && !ParallelLexer.isBoundary(old, lo)) lo--;
+        lo = Math.max(lo, 0);
+        int hi = offset + length;
+        while (hi < old.length() && old.charAt(hi) != '\n') hi++;
+        hi++;
+        while (hi < old.length() && !ParallelLexer.isBoundary(old, hi)) hi++;
+        hi = Math.min(hi, old.length());
+        boolean last = hi == old.length();
+        int delta = replacement.length() - length;
+
+        TokenBuffer chunk;
+        try {
+            chunk = new Lexer(new TextManager(CharBuffer.wrap(source, lo, hi + delta))).LexBuffer();
+        } catch (SyntaxErrorException ex) {
+            return parse(source);   // throws the error with its line in the whole text
+        }
+        SymbolTable local = chunk.symbolTable();
+        int[] remap = new int[local.size()];
+        for (int id = 0; id < remap.length; id++) remap[id] = symbols.intern(local.name(id));
+
+        // the old tokens of [lo, hi), by line: the first token of a top-level line follows the
+        // DEDENTs that close the blocks before it
+        int firstLine = 1 + newlines(old, 0, lo);
+        int from = (lo == 0) ? 0 : firstToken(oldTokens, firstLine);
+        int to = last ? oldTokens.size() : firstToken(oldTokens, firstLine + newlines(old, lo, hi));
+        int n = last ? chunk.size() : chunk.size() - 1;   // as in ParallelLexer, without the final NEWLINE
+        int lineDelta = newlines(replacement, 0, replacement.length()) - newlines(old, offset, offset + length);
+
+        TokenBuffer tokens = new TokenBuffer(source, symbols, oldTokens.size() - (to - from) + n);
+        tokens.append(oldTokens, 0, from, 0, 0, null);
+        tokens.append(chunk, 0, n, lo, firstLine - 1, remap);
+        tokens.append(oldTokens, to, oldTokens.size(), delta, lineDelta, null);
+
+        Nusha edited = new NushaFall2025Parser().parseRange(tokens, from, from + n);
+        if (edited == null) return parseAll(source, tokens);
+
+        // items of the old tree: head before from, then replaced ones up to to, then the rest
+        Nusha before = previous.tree.get();
+        int[] head = itemCounts(oldTokens, 0, from);
+        int[] replaced = itemCounts(oldTokens, from, to);
+        Nusha root = NushaFall2025Parser.newRoot();
+        splice(root.definitions.definition, before.definitions.definition, head[0], replaced[0], edited.definitions.definition);
+        splice(root.variables.variable, before.variables.variable, head[1], replaced[1], edited.variables.variable);
+        splice(root.rules.rule, before.rules.rule, head[2], replaced[2], edited.rules.rule);
+        return new Snapshot(source, tokens, Optional.of(root), true);
+    }
+
+    private static Snapshot parseAll(CharSequence source, TokenBuffer tokens) throws SyntaxErrorException {
+        Nusha tree = (tokens.size() == 0) ? null : new NushaFall2025Parser().parseRange(tokens, 0, tokens.size());
+        if (tree != null) return new Snapshot(source, tokens, Optional.of(tree), true);
+        return new Snapshot(source, tokens, new NushaFall2025Parser().Nusha(tokens), false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void splice(List<T> into, List<T> old, int head, int replaced, List<T> edited) {
+        into.addAll(old.subList(0, head));
+        into.addAll(edited);
+        into.addAll(old.subList(head + replaced, old.size()));
+    }
+
+    // definitions, variables and rules starting in tokens [from, to), which start at depth 0;
+    // told apart the way the parser does
+    private static int[] itemCounts(TokenBuffer tokens, int from, int to) {
+        int[] counts = new int[3];
+        int depth = 0;
+        for (int i = from; i < to; i++) {
+            boolean start = (i == 0) ? !isLayout(tokens, 0) : ParallelParser.isItemStart(tokens, i);
+            if (depth == 0 && start) {
+                if (tokens.is(i, Token.TokenTypes.VAR)) counts[1]++;
+                else if (tokens.is(i, Token.TokenTypes.IDENTIFIER) && i + 1 < tokens.size()
+                        && tokens.is(i + 1, Token.TokenTypes.EQUAL)) counts[0]++;
+                else counts[2]++;
+            }
+            if (tokens.is(i, Token.TokenTypes.INDENT)) depth++;
+            else if (tokens.is(i, Token.TokenTypes.DEDENT)) depth--;
+        }
+        return counts;
+    }
+
+    private static boolean isLayout(TokenBuffer tokens, int i) {
+        return tokens.is(i, Token.TokenTypes.NEWLINE)
+                || tokens.is(i, Token.TokenTypes.INDENT)
+                || tokens.is(i, Token.TokenTypes.DEDENT);
+    }
+
+    // index of the first token on line or later that is not a DEDENT (lines never decrease)
+    private static int firstToken(TokenBuffer tokens, int line) {
+        int low = 0, high = tokens.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens.line(mid) < line) low = mid + 1;
+            else high = mid;
+        }
+        while (low < tokens.size() && tokens.is(low, Token.TokenTypes.DEDENT)) low++;
+        return low;
+    }
+
+    private static int newlines(CharSequence text, int start, int end) {
+        int n = 0;
+        for (int i = start; i < end; i++) if (text.charAt(i) == '\n') n++;
+        return n;
+    }
+}
@@ -1,40 +1,81 @@
 import AST.*;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigInteger;
 import java.util.*;
 
 public class Interpreter {
 
+    // names as dense ids; the structures below are indexed by symbol id, null where a name
+    // is not one of theirs
+    private final SymbolTable symbols;
+
     // interpreter structures
-    private final Map<String, String[]> definitions = new HashMap<>();
+    private String[][] definitions = new String[0][];
+
+    // per definition: choice symbol id -> value index, -1 for other names
+    private IdMap[] choiceIndex = new IdMap[0];
+
+    private Entry[][] structTemplates = new Entry[0][];
 
-    private final Map<String, Entry[]> structTemplates = new HashMap<>();
+    private variableInstance[][] varMap = new variableInstance[0][];
 
-    private final Map<String, variableInstance[]> varMap = new HashMap<>();
+    private structInstance[][] structMap = new structInstance[0][];
 
-    private final Map<String, structInstance[]> structMap = new HashMap<>();
+    // symbol ids of the varMap and structMap arrays, in declaration order
+    private final List<Integer> varNames = new ArrayList<>();
+    private final List<Integer> structNames = new ArrayList<>();
 
     private final List<variableInstance> allVars = new ArrayList<>();
 
     private final Map<VariableReference, ParsedModifier> modifierCache = new IdentityHashMap<>();
 
+    // one column per unique struct field
+    private final List<variableInstance[]> uniqueGroups = new ArrayList<>();
+
+    // live domains of allVars (indexed by variableInstance.id), undone through its trail
+    private DomainStore store;
+
+    // compiled rules and uniqueness constraints over the store
+    private PropagationEngine engine;
+
+    // presolve: variables forced equal by plain var = var rules share one representative
+    private UnionFind equalities;
+
+    // dual model: channeled unique columns, and for each primal variable its column and index
+    private final List<Channel> channels = new ArrayList<>();
+    private int[] channelOf;
+    private int[] channelIndex;
+
+    // complete-assignment checks, kept in fail-first order
+    private final List<RuleCheck> checkOrder = new ArrayList<>();
+
+    private long checksSinceReorder = 0;
+
+    // how many complete assignments are checked between reorders
+    private static final int REORDER_INTERVAL = 4096;
+
 
 
     //One runtime variable instance.
     private static final class variableInstance {
         final String defName;
         final String[] domain;
+        final IdMap valueOf;    // choice symbol id -> value index, shared per definition
         int value = 0;
 
+        // position in allVars, used as the variable id in the DomainStore
+        int id = -1;
+
         // For uniqueness constraints
         final ArrayList<variableInstance> uniquePeers = new ArrayList<>();
 
-        variableInstance(String defName, String[] domain) {
+        variableInstance(String defName, String[] domain, IdMap valueOf) {
             this.defName = defName;
             this.domain = domain;
-        }
-
-        String valueAsString() {
-            int idx = Math.max(0, Math.min(value, domain.length - 1));
-            return domain[idx];
+            this.valueOf = valueOf;
         }
 
         void connectUniquePeer(variableInstance other) {
@@ -44,44 +85,255 @@ public class Interpreter {
         }
     }
 
-    //Struct instance: ordered fields
+    //Struct instance: fields in schema order, found by the symbol id of their name
     private static final class structInstance {
-        private final LinkedHashMap<String, variableInstance> fields = new LinkedHashMap<>();
-        void put(String fieldName, variableInstance vi) { fields.put(fieldName, vi); }
-        variableInstance get(String fieldName) { return fields.get(fieldName); }
-        Set<Map.Entry<String, variableInstance>> entries() { return fields.entrySet(); }
+        final String[] fieldNames;      // shared by the whole array
+        final IdMap slotOf;             // field symbol id -> slot, -1 for other names; shared
+        final variableInstance[] fields;
+        structInstance(String[] fieldNames, IdMap slotOf) {
+            this.fieldNames = fieldNames;
+            this.slotOf = slotOf;
+            this.fields = new variableInstance[fieldNames.length];
+        }
+        variableInstance get(int field) {
+            int slot = slotOf.get(field);
+            return (slot >= 0) ? fields[slot] : null;
+        }
+    }
+
+    // Symbol id -> small int, by open addressing in a table sized to its own entries. A dense
+    // array per definition would be sized to the whole symbol table instead, which grows with
+    // every name in the program (and every rule name when the lexer's table is shared).
+    private static final class IdMap {
+        private final int[] keys;       // symbol id + 1, 0 = empty
+        private final int[] values;
+        private final int shift;
+
+        IdMap(int entries) {
+            int bits = 2;
+            while ((1 << bits) < entries * 2) bits++;
+            keys = new int[1 << bits];
+            values = new int[1 << bits];
+            shift = 32 - bits;
+        }
+
+        // value of id, -1 when absent
+        int get(int id) {
+            int mask = keys.length - 1;
+            for (int s = (id * 0x9E3779B9) >>> shift; ; s = (s + 1) & mask) {
+                if (keys[s] == 0) return -1;
+                if (keys[s] == id + 1) return values[s];
+            }
+        }
+
+        // set id to value, replacing an earlier value; at most the entries given to the constructor
+        void put(int id, int value) {
+            int mask = keys.length - 1;
+            int s = (id * 0x9E3779B9) >>> shift;
+            while (keys[s] != 0 && keys[s] != id + 1) s = (s + 1) & mask;
+            keys[s] = id + 1;
+            values[s] = value;
+        }
+    }
+
+    // One entry of the check order: a rule, or the uniqueness check when rule is null.
+    private static final class RuleCheck {
+        final Rule rule;
+        long failures = 0;
+        RuleCheck(Rule rule) { this.rule = rule; }
+    }
+
+    // A permutation-shaped unique column and its inverse: dual[v] is the index holding value v.
+    private static final class Channel {
+        final int[] primal;
+        final int[] dual;
+        Channel(int[] primal, int[] dual) {
+            this.primal = primal;
+            this.dual = dual;
+        }
     }
 
     private static final class ParsedModifier {
         final Integer index;
         final String fieldName;
+        int base = -1;      // symbol ids of the reference's name and field (-1 for none)
+        int field = -1;
         ParsedModifier(Integer index, String fieldName) {
             this.index = index;
             this.fieldName = fieldName;
         }
     }
 
-    // interpret
-    public void Interpret(Nusha tree) throws Exception {
-        definitions.clear();
-        structTemplates.clear();
-        varMap.clear();
-        structMap.clear();
+    // settings and solution count of the current run
+    private SolveOptions options = new SolveOptions();
+    private long solutionCount = 0;
+
+    // struct arrays whose instances no rule tells apart, and the count before symmetry breaking
+    private final List<structInstance[]> symmetricStructs = new ArrayList<>();
+    private BigInteger rawSolutionCount = BigInteger.ZERO;
+
+    // the general engine of the last run (null when a backend or local search ran instead),
+    // kept for its statistics
+    private SearchEngine search;
+
+    // which backend ran, and its step count for local search and LNS
+    private String backend;
+    private long steps;
+
+    // what goes into the SolveResult: the first solution or best assignment
+    private int[] assignment;
+
+    // where ALL mode's solutions go as they are found, null to only count them; values is
+    // reused for every solution
+    private SolutionSink sink;
+    private int[] sinkValues;
+
+    // id layout of varMap and structMap arrays, in allVars order
+    private final List<SolveResult.VariableArray> arrays = new ArrayList<>();
+
+    // time, node and cancellation limits of the current run, shared by every backend
+    private SearchLimits limits;
+
+    // LOCAL_SEARCH without a solution: violated rules in the best assignment, else -1
+    private int bestViolatedRules = -1;
+
+    public Interpreter() {
+        this(new SymbolTable());
+    }
+
+    // share the lexer's table (Lexer.getSymbols()) so names are not hashed a second time
+    public Interpreter(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    // interpret: solve and print the result the way the original interpreter did
+    public SolveResult Interpret(Nusha tree) throws Exception {
+        return Interpret(tree, new SolveOptions());
+    }
+
+    public SolveResult Interpret(Nusha tree, SolveOptions options) throws Exception {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        ResultRenderer renderer = new ResultRenderer(out, (options == null) ? ResultRenderer.Format.TEXT : options.output);
+        SolveResult result;
+        try {
+            result = Solve(tree, options, renderer);   // ALL mode's solutions print as they are found
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        renderer.render(result);
+        return result;
+    }
+
+    // solve without printing anything
+    public SolveResult Solve(Nusha tree, SolveOptions options) {
+        return Solve(tree, options, null);
+    }
+
+    // solve, handing ALL mode's solutions to sink as they are found (the result keeps only the
+    // first one)
+    public SolveResult Solve(Nusha tree, SolveOptions options, SolutionSink sink) {
+        long start = System.nanoTime();
+        this.options = (options == null) ? new SolveOptions() : options;
+        this.sink = (this.options.mode == SolveOptions.Mode.ALL) ? sink : null;
+        solutionCount = 0;
+        rawSolutionCount = BigInteger.ZERO;
+        bestViolatedRules = -1;
+        search = null;
+        backend = "presolve";
+        steps = 0;
+        assignment = null;
+        arrays.clear();
+        limits = new SearchLimits(this.options);
+        symmetricStructs.clear();
+        varNames.clear();
+        structNames.clear();
         allVars.clear();
+        uniqueGroups.clear();
+        channels.clear();
         modifierCache.clear();
+        checkOrder.clear();
+        checksSinceReorder = 0;
 
+        internNames(tree);
         loadDefinitionsAndStructs(tree);
         instantiateVariables(tree);
         buildAllVarsList();
 
-        boolean found = runSolver(tree);
+        String[][] domains = new String[allVars.size()][];
+        for (variableInstance vi : allVars) domains[vi.id] = vi.domain;
+        SolveResult.Variables variables = new SolveResult.Variables(arrays, domains);
+        if (this.sink != null) {
+            sinkValues = new int[allVars.size()];
+            this.sink.begin(variables);
+        }
 
-        if (found) {
-            System.out.println("SUCCESS:");
-            printAllStructVars();
-        } else {
-            System.out.println("NO SOLUTION FOUND.");
+        runSolver(tree);
+
+        SolveResult.Status status;
+        if (limits.isStopped()) status = SolveResult.Status.valueOf(limits.status().name());
+        else status = (solutionCount > 0) ? SolveResult.Status.SUCCESS : SolveResult.Status.NO_SOLUTION;
+
+        return new SolveResult(status, this.options.mode,
+                solutionCount, rawSolutionCount, !symmetricStructs.isEmpty(),
+                assignment, bestViolatedRules, variables,
+                backend, System.nanoTime() - start, limits.nodes(),
+                (search == null) ? 0 : search.failures(),
+                (search == null) ? 0 : search.restarts(),
+                steps,
+                (search == null) ? -1 : search.discrepancies());
+    }
+
+    // called for every verified solution; true when the search should stop
+    private boolean recordSolution() {
+        solutionCount++;
+        rawSolutionCount = rawSolutionCount.add(symmetryWeight());
+        if (options.mode == SolveOptions.Mode.FIRST) {
+            assignment = currentValues();
+            return true;
+        }
+        if (options.mode == SolveOptions.Mode.ALL) {
+            if (assignment == null) assignment = currentValues();
+            if (sink != null) {
+                for (variableInstance vi : allVars) sinkValues[vi.id] = vi.value;
+                sink.solution(solutionCount, sinkValues);
+            }
         }
+        return solutionCount >= options.maxSolutions;
+    }
+
+    private int[] currentValues() {
+        int[] values = new int[allVars.size()];
+        for (variableInstance vi : allVars) values[vi.id] = vi.value;
+        return values;
+    }
+
+    // give every declared name an id and size the per-name tables; names that only rules
+    // mention get ids later and fall outside the tables
+    @SuppressWarnings("unchecked")
+    private void internNames(Nusha tree) {
+        if (tree.definitions != null && tree.definitions.definition != null) {
+            for (Definition def : (List<Definition>) tree.definitions.definition) {
+                symbols.intern(def.definitionName);
+                if (def.choices != null && def.choices.isPresent())
+                    for (String c : (List<String>) def.choices.get().choice) symbols.intern(c);
+                if (def.nstruct != null && def.nstruct.isPresent())
+                    for (Entry e : (List<Entry>) def.nstruct.get().entry) symbols.intern(e.name);
+            }
+        }
+        if (tree.variables != null && tree.variables.variable != null)
+            for (Variable va : (List<Variable>) tree.variables.variable) symbols.intern(va.variableName);
+
+        int n = symbols.size();
+        definitions = new String[n][];
+        choiceIndex = new IdMap[n];
+        structTemplates = new Entry[n][];
+        varMap = new variableInstance[n][];
+        structMap = new structInstance[n][];
+    }
+
+    // the entry for symbol id in a per-name table, null when there is none
+    private static <T> T at(T[] table, int id) {
+        return (id >= 0 && id < table.length) ? table[id] : null;
     }
 
     // Defination and Stucts
@@ -90,16 +342,22 @@ public class Interpreter {
         if (tree.definitions == null || tree.definitions.definition == null) return;
 
         for (Definition def : (List<Definition>) tree.definitions.definition) {
-            String name = def.definitionName;
+            int name = symbols.intern(def.definitionName);
 
             if (def.choices != null && def.choices.isPresent()) {
                 List<String> list = (List<String>) def.choices.get().choice;
-                definitions.put(name, list.toArray(new String[0]));
+                definitions[name] = list.toArray(new String[0]);
+
+                // a repeated choice resolves to its last position
+                IdMap index = new IdMap(definitions[name].length);
+                for (int i = 0; i < definitions[name].length; i++)
+                    index.put(symbols.intern(definitions[name][i]), i);
+                choiceIndex[name] = index;
             }
 
             if (def.nstruct != null && def.nstruct.isPresent()) {
                 Entry[] schema = ((List<Entry>) def.nstruct.get().entry).toArray(new Entry[0]);
-                structTemplates.put(name, schema);
+                structTemplates[name] = schema;
             }
         }
     }
@@ -110,24 +368,38 @@ public class Interpreter {
         if (tree.variables == null || tree.variables.variable == null) return;
 
         for (Variable va : (List<Variable>) tree.variables.variable) {
-            String varName = va.variableName;
+            int varName = symbols.intern(va.variableName);
             String type = va.type;
+            int typeName = symbols.find(type);
 
             int size = 1;
             if (va.size != null && va.size.isPresent()) {
                 try { size = Integer.parseInt(va.size.get()); } catch (Exception ignored) {}
             }
 
-            if (structTemplates.containsKey(type)) {
+            if (at(structTemplates, typeName) != null) {
                 // array of structs
                 structInstance[] sin = new structInstance[size];
-                Entry[] schema = structTemplates.get(type);
+                Entry[] schema = structTemplates[typeName];
+
+                // slots in schema order; a repeated field name keeps its first slot
+                IdMap slotOf = new IdMap(schema.length);
+                List<String> fieldNames = new ArrayList<>();
+                for (Entry e : schema) {
+                    int f = symbols.intern(e.name);
+                    if (slotOf.get(f) < 0) {
+                        slotOf.put(f, fieldNames.size());
+                        fieldNames.add(e.name);
+                    }
+                }
+                String[] names = fieldNames.toArray(new String[0]);
 
                 for (int i = 0; i < size; i++) {
-                    structInstance structInstance = new structInstance();
+                    structInstance structInstance = new structInstance(names, slotOf);
                     for (Entry e : schema) {
-                        String[] domain = definitions.get(e.type);
-                        structInstance.put(e.name, new variableInstance(e.type, domain));
+                        int def = symbols.find(e.type);
+                        structInstance.fields[slotOf.get(symbols.intern(e.name))] =
+                                new variableInstance(e.type, at(definitions, def), at(choiceIndex, def));
                     }
                     sin[i] = structInstance;
                 }
@@ -135,23 +407,29 @@ public class Interpreter {
                 // uniqueness wiring
                 for (Entry e : schema) {
                     if (e.unique != null && e.unique) {
+                        int f = symbols.intern(e.name);
+                        variableInstance[] column = new variableInstance[size];
                         for (int i = 0; i < size; i++) {
-                            variableInstance a = sin[i].get(e.name);
+                            variableInstance a = sin[i].get(f);
+                            column[i] = a;
                             for (int j = i + 1; j < size; j++) {
-                                a.connectUniquePeer(sin[j].get(e.name));
+                                a.connectUniquePeer(sin[j].get(f));
                             }
                         }
+                        uniqueGroups.add(column);
                     }
                 }
 
-                structMap.put(varName, sin);
+                declare(varName, true);
+                structMap[varName] = sin;
 
-            } else if (definitions.containsKey(type)) {
+            } else if (at(definitions, typeName) != null) {
                 // simple var array
-                String[] domain = definitions.get(type);
+                String[] domain = definitions[typeName];
                 variableInstance[] vn = new variableInstance[size];
-                for (int i = 0; i < size; i++) vn[i] = new variableInstance(type, domain);
-                varMap.put(varName, vn);
+                for (int i = 0; i < size; i++) vn[i] = new variableInstance(type, domain, choiceIndex[typeName]);
+                declare(varName, false);
+                varMap[varName] = vn;
 
             } else {
                 throw new IllegalStateException("Unknown type: " + type);
@@ -159,47 +437,643 @@ public class Interpreter {
         }
     }
 
+    // a redeclared name replaces the earlier array
+    private void declare(int name, boolean struct) {
+        varNames.remove((Integer) name);
+        structNames.remove((Integer) name);
+        varMap[name] = null;
+        structMap[name] = null;
+        (struct ? structNames : varNames).add(name);
+    }
+
     // to build all var list
     private void buildAllVarsList() {
-        for (variableInstance[] vi : varMap.values()) Collections.addAll(allVars, vi);
-        for (structInstance[] sn : structMap.values())
+        for (int name : varNames) {
+            arrays.add(new SolveResult.VariableArray(symbols.name(name), varMap[name].length, null, allVars.size()));
+            Collections.addAll(allVars, varMap[name]);
+        }
+        for (int name : structNames) {
+            structInstance[] sn = structMap[name];
+            String[] fields = (sn.length == 0) ? new String[0] : sn[0].fieldNames;
+            arrays.add(new SolveResult.VariableArray(symbols.name(name), sn.length, fields, allVars.size()));
             for (structInstance sIn : sn)
-                for (var e : sIn.entries())
-                    allVars.add(e.getValue());
+                Collections.addAll(allVars, sIn.fields);
+        }
 
+        for (int i = 0; i < allVars.size(); i++) allVars.get(i).id = i;
     }
 
-    // solver
+    // solver: solutions are reported through recordSolution
     @SuppressWarnings("unchecked")
-    private boolean runSolver(Nusha tree) {
+    private void runSolver(Nusha tree) {
 
         List<Rule> rules =
                 (tree.rules == null || tree.rules.rule == null)
                         ? Collections.emptyList()
                         : (List<Rule>) tree.rules.rule;
 
+        // uniqueness goes first, then rules in source order until failures say otherwise
+        checkOrder.add(new RuleCheck(null));
+        for (Rule rl : rules) checkOrder.add(new RuleCheck(rl));
+
         // Reset all values
         for (variableInstance v : allVars) v.value = 0;
 
-        while (true) {
-            if (checkUniqueness() && checkAllRules(rules)) return true;
-            if (!incrementAllVars()) break;
+        if (options.strategy == SolveOptions.Strategy.LOCAL_SEARCH) {
+            runLocalSearch(rules);
+            return;
         }
-        return false;
+        if (options.strategy == SolveOptions.Strategy.LNS) {
+            runLargeNeighborhoodSearch(rules);
+            return;
+        }
+
+        if (options.breakSymmetry && options.mode == SolveOptions.Mode.COUNT) detectSymmetry(rules);
+
+        structInstance[] permutation = permutationStruct();
+        if (permutation != null) {
+            // classic logic grids go to the boolean-matrix backend, enumeration to DLX
+            if (options.mode == SolveOptions.Mode.FIRST) {
+                LogicGridSolver grid = buildLogicGrid(permutation, rules);
+                if (grid != null) {
+                    backend = "logic-grid";
+                    grid.setLimits(limits);
+                    if (grid.solve(this::acceptGrid) != null) recordSolution();
+                    return;
+                }
+            } else {
+                solveExactCover(permutation, rules);
+                return;
+            }
+        }
+
+        if (!buildPropagators(rules)) return;
+
+        // root propagation is permanent, nothing to undo above it
+        engine.scheduleAll();
+        if (!engine.propagate()) return;
+
+        // odometer order: the last variable is the most significant digit, so with the default
+        // options the first solution found is the one the old odometer loop would have found
+        int[] branchVars = new int[allVars.size()];
+        int count = 0;
+        for (int i = allVars.size() - 1; i >= 0; i--)
+            if (equalities.isRepresentative(i)) branchVars[count++] = i;
+
+        backend = "search";
+        search = new SearchEngine(engine, Arrays.copyOf(branchVars, count), options, limits);
+        search.solve(s -> {
+            for (variableInstance vi : allVars) vi.value = s.value(equalities.find(vi.id));
+            return checkAllRules() && recordSolution();
+        });
+    }
+
+    // min-conflicts over the same rule checks the DLX backend uses, plus one all-different per
+    // unique column; keeps the best assignment when no solution turns up within the limits
+    private void runLocalSearch(List<Rule> rules) {
+        LocalSearch ls = new LocalSearch(searchDomainSizes(), searchConstraints(rules), options, limits);
+        backend = "local-search";
+        boolean solved = ls.solve();
+        steps = ls.steps();
+        takeAssignment(ls.best(), solved, rules);
+    }
+
+    // LNS over the same constraints; neighborhoods are struct instances and field columns
+    private void runLargeNeighborhoodSearch(List<Rule> rules) {
+        List<int[]> neighborhoods = new ArrayList<>();
+        for (int name : structNames) {
+            structInstance[] arr = structMap[name];
+            if (arr.length == 0) continue;
+            for (structInstance si : arr) neighborhoods.add(ids(Arrays.asList(si.fields)));
+            for (int f = 0; f < arr[0].fields.length; f++) {
+                List<variableInstance> column = new ArrayList<>();
+                for (structInstance si : arr) column.add(si.fields[f]);
+                neighborhoods.add(ids(column));
+            }
+        }
+        for (int name : varNames) neighborhoods.add(ids(Arrays.asList(varMap[name])));
+
+        LargeNeighborhoodSearch lns = new LargeNeighborhoodSearch(
+                searchDomainSizes(), searchConstraints(rules), neighborhoods, options, limits);
+        backend = "lns";
+        boolean solved = lns.solve();
+        steps = lns.rounds();
+        takeAssignment(lns.values(), solved, rules);
     }
 
+    // rule checks plus one all-different per unique column, over allVars ids
+    private List<Propagator> searchConstraints(List<Rule> rules) {
+        List<Propagator> constraints = compileRuleChecks(rules);
+        for (variableInstance[] column : uniqueGroups) {
+            int maxSize = 0;
+            for (variableInstance vi : column)
+                maxSize = Math.max(maxSize, vi.domain == null ? 0 : vi.domain.length);
+            constraints.add(new AllDifferentPropagator(ids(Arrays.asList(column)), maxSize));
+        }
+        return constraints;
+    }
+
+    private int[] searchDomainSizes() {
+        int[] sizes = new int[allVars.size()];
+        for (variableInstance vi : allVars) sizes[vi.id] = (vi.domain == null) ? 0 : vi.domain.length;
+        return sizes;
+    }
 
-    // odometer increment
-    private boolean incrementAllVars() {
-        for (int i = 0; i < allVars.size(); i++) {
-            variableInstance va = allVars.get(i);
-            va.value++;
-            if (va.value < va.domain.length) return true;
-            va.value = 0;
+    private static int[] ids(Collection<variableInstance> vars) {
+        int[] ids = new int[vars.size()];
+        int k = 0;
+        for (variableInstance vi : vars) ids[k++] = vi.id;
+        return ids;
+    }
+
+    // copy an incomplete search's result into allVars; a verified solution is recorded,
+    // otherwise the number of rules it breaks is kept for the report
+    private void takeAssignment(int[] values, boolean solved, List<Rule> rules) {
+        for (variableInstance vi : allVars) vi.value = values[vi.id];
+        if (solved && checkAllRules()) {
+            recordSolution();
+        } else {
+            bestViolatedRules = countViolatedRules(rules);
+            assignment = currentValues();
         }
+    }
+
+    // rules failing under the current values, counting each unique column as one rule
+    private int countViolatedRules(List<Rule> rules) {
+        int count = 0;
+        for (Rule rl : rules)
+            if (!runRule(rl)) count++;
+        for (variableInstance[] column : uniqueGroups) {
+            boolean clash = false;
+            for (int i = 0; i < column.length && !clash; i++)
+                for (int j = i + 1; j < column.length && !clash; j++)
+                    clash = column[i].value == column[j].value;
+            if (clash) count++;
+        }
+        return count;
+    }
+
+    // a struct array is symmetric when no rule names one of its instances by index, so every
+    // rule treats all instances alike and permuting them maps solutions onto solutions
+    private void detectSymmetry(List<Rule> rules) {
+        boolean[] indexed = new boolean[structMap.length];
+        for (Rule rl : rules) {
+            collectIndexed(rl.expression, indexed);
+            if (rl.thens != null)
+                for (Expression ex : rl.thens) collectIndexed(ex, indexed);
+        }
+        for (int name : structNames)
+            if (structMap[name].length > 1 && !indexed[name])
+                symmetricStructs.add(structMap[name]);
+    }
+
+    private void collectIndexed(Expression expr, boolean[] indexed) {
+        for (VariableReference ref : new VariableReference[] { expr.left, expr.right }) {
+            if (ref == null) continue;
+            ParsedModifier pm = getCachedModifier(ref);
+            if (at(structMap, pm.base) != null && pm.index != null) indexed[pm.base] = true;
+        }
+    }
+
+    private boolean isSymmetric(structInstance[] arr) {
+        for (structInstance[] s : symmetricStructs)
+            if (s == arr) return true;
         return false;
     }
 
+    // raw solutions represented by the current one: n! / (product of m! over identical rows)
+    // for every symmetric struct array
+    private BigInteger symmetryWeight() {
+        BigInteger weight = BigInteger.ONE;
+        for (structInstance[] arr : symmetricStructs) {
+            weight = weight.multiply(factorial(arr.length));
+            boolean[] counted = new boolean[arr.length];
+            for (int i = 0; i < arr.length; i++) {
+                if (counted[i]) continue;
+                int same = 1;
+                for (int j = i + 1; j < arr.length; j++) {
+                    if (!counted[j] && sameValues(arr[i], arr[j])) {
+                        counted[j] = true;
+                        same++;
+                    }
+                }
+                weight = weight.divide(factorial(same));
+            }
+        }
+        return weight;
+    }
+
+    private static boolean sameValues(structInstance a, structInstance b) {
+        for (int f = 0; f < a.fields.length; f++)
+            if (a.fields[f].value != b.fields[f].value) return false;
+        return true;
+    }
+
+    private static BigInteger factorial(int n) {
+        BigInteger f = BigInteger.ONE;
+        for (int k = 2; k <= n; k++) f = f.multiply(BigInteger.valueOf(k));
+        return f;
+    }
+
+    // the only struct array when it is the whole program and every field is unique with
+    // exactly one value per instance, else null
+    private structInstance[] permutationStruct() {
+        if (!varNames.isEmpty() || structNames.size() != 1) return null;
+        structInstance[] arr = structMap[structNames.get(0)];
+        int n = arr.length;
+        if (n < 1) return null;
+
+        for (structInstance si : arr) {
+            for (variableInstance vi : si.fields) {
+                if (vi.domain == null || vi.domain.length != n || vi.uniquePeers.size() != n - 1) return null;
+            }
+        }
+        return arr;
+    }
+
+    // logic-grid shape: a permutation struct whose rules are all cell clues; null otherwise
+    private LogicGridSolver buildLogicGrid(structInstance[] arr, List<Rule> rules) {
+        int n = arr.length;
+        if (n > LogicGridSolver.MAX_SIZE) return null;
+
+        // grid coordinates of every variable: instance index and field attribute (1-based)
+        int[] gridIndex = new int[allVars.size()];
+        int[] gridField = new int[allVars.size()];
+        int fields = arr[0].fields.length;
+        for (int i = 0; i < n; i++) {
+            int f = 1;
+            for (variableInstance vi : arr[i].fields) {
+                gridIndex[vi.id] = i;
+                gridField[vi.id] = f++;
+            }
+        }
+
+        LogicGridSolver grid = new LogicGridSolver(n, fields);
+        int structName = structNames.get(0);
+
+        for (Rule rl : rules) {
+            if (rl.thens == null || rl.thens.isEmpty()) {
+                // Stories[1].a = Bob: a clue on the index/field matrix
+                Literal l = compileLiteral(rl.expression, -1, -1, false);
+                if (!l.isConstant()) return null;
+                addGridClue(grid, 0, gridIndex[l.x], gridField[l.x], l);
+                continue;
+            }
+
+            if (getCachedModifier(rl.expression.left).base != structName) return null;
+
+            // Stories.a = Alice => Stories.h != Red: a clue on the a/h matrix
+            Literal first = null;
+            for (int i = 0; i < n; i++) {
+                Literal h = compileLiteral(rl.expression, structName, i, true);
+                if (!h.isConstant() || h.not || gridIndex[h.x] != i) return null;
+                if (first == null) first = h;
+                else if (h.constant != first.constant || gridField[h.x] != gridField[first.x]) return null;
+            }
+            if (first.constant < 0) continue;   // the head never holds
+
+            for (Expression ex : rl.thens) {
+                Literal t0 = null;
+                for (int i = 0; i < n; i++) {
+                    Literal t = compileLiteral(ex, structName, i, true);
+                    if (!t.isConstant() || gridIndex[t.x] != i) return null;
+                    if (t0 == null) t0 = t;
+                    else if (t.constant != t0.constant || t.not != t0.not || gridField[t.x] != gridField[t0.x]) return null;
+                }
+                if (gridField[t0.x] == gridField[first.x]) return null;
+                addGridClue(grid, gridField[first.x], first.constant, gridField[t0.x], t0);
+            }
+        }
+
+        return grid;
+    }
+
+    // the instance with attribute a = x satisfies literal l on attribute b
+    private void addGridClue(LogicGridSolver grid, int a, int x, int b, Literal l) {
+        if (l.constant < 0) {
+            if (!l.not) grid.fail();
+        } else if (l.not) {
+            grid.eliminate(a, x, b, l.constant);
+        } else {
+            grid.fix(a, x, b, l.constant);
+        }
+    }
+
+    // a complete grid from the backend, checked against the rules like any other candidate
+    private boolean acceptGrid(int[][] values) {
+        structInstance[] arr = structMap[structNames.get(0)];
+        for (int i = 0; i < arr.length; i++) {
+            int f = 0;
+            for (variableInstance vi : arr[i].fields) vi.value = values[i][f++];
+        }
+        return checkAllRules();
+    }
+
+    // exact cover: every (instance, field) cell and every (field, value) pair is covered once.
+    // Constant clues on single cells drop rows up front; all other rules act as filters,
+    // checked as soon as the last of their variables is placed.
+    private void solveExactCover(structInstance[] arr, List<Rule> rules) {
+        int n = arr.length;
+        int fields = arr[0].fields.length;
+        int cellColumns = n * fields;
+        DancingLinks dlx = new DancingLinks(2 * cellColumns);
+
+        List<Propagator> checks = compileRuleChecks(rules);
+        boolean[][] allowed = new boolean[allVars.size()][];
+        for (variableInstance vi : allVars) {
+            allowed[vi.id] = new boolean[n];
+            Arrays.fill(allowed[vi.id], true);
+        }
+
+        // single-variable checks become row filters
+        List<Propagator> filters = new ArrayList<>();
+        for (Propagator p : checks) {
+            if (p instanceof BinaryPropagator && ((BinaryPropagator) p).literal.isConstant()) {
+                Literal l = ((BinaryPropagator) p).literal;
+                for (int v = 0; v < n; v++)
+                    if (l.not == (v == l.constant)) allowed[l.x][v] = false;
+            } else {
+                filters.add(p);
+            }
+        }
+
+        // interchangeable instances: instance i takes value i of the first field
+        if (isSymmetric(arr)) {
+            for (int i = 0; i < n; i++) {
+                int id = arr[i].fields[0].id;
+                for (int v = 0; v < n; v++) allowed[id][v] &= (v == i);
+            }
+        }
+
+        List<int[]> rowCells = new ArrayList<>();   // row -> {variable id, value}
+        for (int i = 0; i < n; i++) {
+            int f = 0;
+            for (variableInstance vi : arr[i].fields) {
+                int id = vi.id;
+                for (int v = 0; v < n; v++) {
+                    if (!allowed[id][v]) continue;
+                    dlx.addRow(i * fields + f, cellColumns + f * n + v);
+                    rowCells.add(new int[] { id, v });
+                }
+                f++;
+            }
+        }
+
+        // per variable, the filters that mention it, and per filter how many variables are open
+        List<List<Integer>> watching = new ArrayList<>();
+        for (int v = 0; v < allVars.size(); v++) watching.add(new ArrayList<>());
+        int[] open = new int[filters.size()];
+        for (int k = 0; k < filters.size(); k++) {
+            for (int v : filters.get(k).vars) watching.get(v).add(k);
+            open[k] = filters.get(k).vars.length;
+        }
+
+        int[] values = new int[allVars.size()];
+        backend = "dlx";
+        dlx.setLimits(limits);
+        dlx.solve(new DancingLinks.Listener() {
+            public boolean select(int row) {
+                int[] cell = rowCells.get(row);
+                values[cell[0]] = cell[1];
+                boolean ok = true;
+                List<Integer> ws = watching.get(cell[0]);
+                int done = 0;
+                for (; done < ws.size(); done++) {
+                    int k = ws.get(done);
+                    if (--open[k] == 0 && !filters.get(k).isSatisfied(values)) {
+                        done++;
+                        ok = false;
+                        break;
+                    }
+                }
+                if (!ok) for (int j = 0; j < done; j++) open[ws.get(j)]++;
+                return ok;
+            }
+
+            public void unselect(int row) {
+                for (int k : watching.get(rowCells.get(row)[0])) open[k]++;
+            }
+
+            public boolean solution(int[] rows, int count) {
+                for (variableInstance vi : allVars) vi.value = values[vi.id];
+                return checkAllRules() && recordSolution();
+            }
+        });
+    }
+
+    // rules as plain checks over allVars ids, without presolve: one literal per plain rule,
+    // one implication per index of a block rule
+    private List<Propagator> compileRuleChecks(List<Rule> rules) {
+        List<Propagator> out = new ArrayList<>();
+        for (Rule rl : rules) {
+            Literal l = compilePlainRule(rl);
+            if (l != null) {
+                out.add(new BinaryPropagator(l));
+                continue;
+            }
+            int structName = getCachedModifier(rl.expression.left).base;
+            structInstance[] stI = at(structMap, structName);
+            for (int i = 0; i < stI.length; i++) {
+                Literal h = compileLiteral(rl.expression, structName, i, true);
+                Literal[] thens = new Literal[rl.thens.size()];
+                int t = 0;
+                for (Expression ex : rl.thens) thens[t++] = compileLiteral(ex, structName, i, true);
+                out.add(new ImplicationPropagator(h, thens));
+            }
+        }
+        return out;
+    }
+
+    // compile rules and unique fields into propagators; false when presolve proves the
+    // program unsatisfiable
+    private boolean buildPropagators(List<Rule> rules) {
+        equalities = new UnionFind(allVars.size());
+
+        // plain rules first, so var = var equalities can be merged before anything is built
+        List<Literal> plain = new ArrayList<>();
+        List<Rule> blocks = new ArrayList<>();
+        for (Rule rl : rules) {
+            Literal l = compilePlainRule(rl);
+            if (l != null) plain.add(l);
+            else blocks.add(rl);
+        }
+        mergeEqualities(plain);
+
+        List<int[]> columns = new ArrayList<>();
+        for (variableInstance[] column : uniqueGroups) {
+            int[] ids = new int[column.length];
+            for (int i = 0; i < column.length; i++) {
+                ids[i] = equalities.find(column[i].id);
+                for (int j = 0; j < i; j++)
+                    if (ids[j] == ids[i]) return false;   // two unique peers merged
+            }
+            columns.add(ids);
+        }
+
+        store = new DomainStore(domainSizes(columns));
+        engine = new PropagationEngine(store);
+
+        for (Literal l : plain) {
+            Literal r = l.remap(equalities);
+            if (!r.isConstant() && r.x == r.y) {
+                if (r.not) return false;   // x != y inside one equality class
+                continue;                  // x = y is now always true
+            }
+            engine.add(new BinaryPropagator(r));
+        }
+
+        for (int[] ids : columns) {
+            int maxSize = 0;
+            for (int id : ids) maxSize = Math.max(maxSize, store.initialSize(id));
+            engine.add(new AllDifferentPropagator(ids, maxSize));
+        }
+        for (Channel ch : channels) engine.add(new ChannelPropagator(ch.primal, ch.dual));
+
+        for (Rule rl : blocks) compileBlockRule(rl);
+
+        // interchangeable instances are kept in lexicographic order
+        for (structInstance[] arr : symmetricStructs)
+            for (int i = 0; i + 1 < arr.length; i++)
+                engine.add(new LexLeqPropagator(rowIds(arr[i]), rowIds(arr[i + 1])));
+        return true;
+    }
+
+    // domain sizes of allVars, followed by one dual variable per value of each channeled column
+    private int[] domainSizes(List<int[]> columns) {
+        int n = allVars.size();
+        channelOf = new int[n];
+        channelIndex = new int[n];
+        Arrays.fill(channelOf, -1);
+
+        List<int[]> duals = new ArrayList<>();
+        int next = n;
+        for (int[] ids : columns) {
+            if (!isPermutation(ids)) continue;
+            int[] dual = new int[ids.length];
+            for (int v = 0; v < dual.length; v++) dual[v] = next++;
+            for (int i = 0; i < ids.length; i++) {
+                channelOf[ids[i]] = channels.size();
+                channelIndex[ids[i]] = i;
+            }
+            channels.add(new Channel(ids, dual));
+            duals.add(dual);
+        }
+
+        int[] sizes = new int[next];
+        for (int i = 0; i < n; i++) {
+            variableInstance vi = allVars.get(i);
+            sizes[i] = (vi.domain == null) ? 0 : vi.domain.length;
+        }
+        for (int[] dual : duals)
+            for (int d : dual) sizes[d] = dual.length;
+        return sizes;
+    }
+
+    // representative ids of one instance's fields, in schema order
+    private int[] rowIds(structInstance si) {
+        int[] ids = new int[si.fields.length];
+        int k = 0;
+        for (variableInstance vi : si.fields) ids[k++] = equalities.find(vi.id);
+        return ids;
+    }
+
+    // a unique column over one shared domain with exactly as many values as instances
+    private boolean isPermutation(int[] ids) {
+        String[] domain = allVars.get(ids[0]).domain;
+        if (domain == null || domain.length != ids.length) return false;
+        for (int id : ids) {
+            if (allVars.get(id).domain != domain || channelOf[id] >= 0) return false;
+        }
+        return true;
+    }
+
+    // union-find over var = var rules whose two sides share a domain
+    private void mergeEqualities(List<Literal> plain) {
+        for (Literal l : plain) {
+            if (l.isConstant() || l.not) continue;
+            variableInstance a = allVars.get(l.x);
+            variableInstance b = allVars.get(l.y);
+            if (a.domain == b.domain || Arrays.equals(a.domain, b.domain))
+                equalities.union(l.x, l.y);
+        }
+    }
+
+    // same shapes as runRule: a plain rule is one literal (null for a block rule)
+    private Literal compilePlainRule(Rule rl) {
+        if (rl.thens == null || rl.thens.isEmpty())
+            return compileLiteral(rl.expression, -1, -1, false);
+
+        Expression head = rl.expression;
+        if (at(structMap, getCachedModifier(head.left).base) == null)
+            return compileLiteral(head, -1, -1, false);
+        return null;
+    }
+
+    // a block rule becomes one implication per index of its struct array, or a single
+    // element constraint on the dual variable when the head is `field = constant` on a channel
+    private void compileBlockRule(Rule rl) {
+        Expression head = rl.expression;
+        int structName = getCachedModifier(head.left).base;
+        structInstance[] stI = at(structMap, structName);
+
+        Literal[] heads = new Literal[stI.length];
+        Literal[][] thens = new Literal[stI.length][];
+        for (int i = 0; i < stI.length; i++) {
+            heads[i] = compileLiteral(head, structName, i, true).remap(equalities);
+            thens[i] = new Literal[rl.thens.size()];
+            int t = 0;
+            for (Expression ex : rl.thens)
+                thens[i][t++] = compileLiteral(ex, structName, i, true).remap(equalities);
+        }
+
+        int where = channeledHead(heads);
+        if (where >= 0) {
+            engine.add(new ElementImplicationPropagator(where, thens));
+            return;
+        }
+        for (int i = 0; i < stI.length; i++)
+            engine.add(new ImplicationPropagator(heads[i], thens[i]));
+    }
+
+    // dual variable of the constant when heads[i] is `column[i] = c` for one channel, else -1
+    private int channeledHead(Literal[] heads) {
+        Literal first = heads[0];
+        if (!first.isConstant() || first.not || first.constant < 0) return -1;
+        int ch = channelOf[first.x];
+        if (ch < 0 || channels.get(ch).primal.length != heads.length) return -1;
+
+        for (int i = 0; i < heads.length; i++) {
+            Literal h = heads[i];
+            if (!h.isConstant() || h.not || h.constant != first.constant) return -1;
+            if (channelOf[h.x] != ch || channelIndex[h.x] != i) return -1;
+        }
+        return channels.get(ch).dual[first.constant];
+    }
+
+    // resolves an expression the same way evaluateExpression does, but to variable ids
+    private Literal compileLiteral(Expression expr,
+                                   int boundStruct,
+                                   int boundIndex,
+                                   boolean hasBound) {
+
+        variableInstance left =
+                evaluateVariableReference(expr.left, boundStruct, boundIndex, hasBound);
+
+        // a name that is no variable is a choice; only variables can fail to resolve
+        variableInstance right = null;
+        if (isVariable(expr.right)) {
+            try {
+                right = evaluateVariableReference(expr.right, boundStruct, boundIndex, hasBound);
+            } catch (RuntimeException ignored) {}
+        }
+
+        boolean isNot = expr.op.toString().contains("!");
+
+        if (right != null) return Literal.vars(left.id, isNot, right.id);
+
+        return Literal.constant(left.id, isNot, valueIndex(left, expr.right));
+    }
+
     private boolean checkUniqueness() {
         for (variableInstance vi : allVars)
             for (variableInstance u : vi.uniquePeers)
@@ -207,26 +1081,42 @@ public class Interpreter {
         return true;
     }
 
-    private boolean checkAllRules(List<Rule> rules) {
-        for (Rule rl : rules)
-            if (!runRule(rl)) return false;
+    // fail-first: the checks that reject most often run first
+    private boolean checkAllRules() {
+        if (++checksSinceReorder >= REORDER_INTERVAL) reorderChecks();
+
+        for (int i = 0; i < checkOrder.size(); i++) {
+            RuleCheck rc = checkOrder.get(i);
+            boolean ok = (rc.rule == null) ? checkUniqueness() : runRule(rc.rule);
+            if (!ok) {
+                rc.failures++;
+                return false;
+            }
+        }
         return true;
     }
 
+    // stable sort by failure count, then halve the counts so the order follows the search
+    private void reorderChecks() {
+        checksSinceReorder = 0;
+        checkOrder.sort((a, b) -> Long.compare(b.failures, a.failures));
+        for (RuleCheck rc : checkOrder) rc.failures >>= 1;
+    }
+
     // rule execution
     private boolean runRule(Rule rl) {
         if (rl.thens == null || rl.thens.isEmpty()) {
-            return evaluateExpression(rl.expression, null, -1, false);
+            return evaluateExpression(rl.expression, -1, -1, false);
         }
         return runComplexRule(rl);
     }
 
     private boolean runComplexRule(Rule r) {
         Expression head = r.expression;
-        String structName = head.left.variableName;
-        structInstance[] stI = structMap.get(structName);
+        int structName = getCachedModifier(head.left).base;
+        structInstance[] stI = at(structMap, structName);
 
-        if (stI == null) return evaluateExpression(head, null, -1, false);
+        if (stI == null) return evaluateExpression(head, -1, -1, false);
 
         for (int i = 0; i < stI.length; i++) {
             if (evaluateExpression(head, structName, i, true)) {
@@ -240,17 +1130,20 @@ public class Interpreter {
 
     // expression evaluation
     private boolean evaluateExpression(Expression expr,
-                                       String boundStructName,
+                                       int boundStruct,
                                        int boundIndex,
                                        boolean hasBound) {
 
         variableInstance left =
-                evaluateVariableReference(expr.left, boundStructName, boundIndex, hasBound);
+                evaluateVariableReference(expr.left, boundStruct, boundIndex, hasBound);
 
+        // a name that is no variable is a choice; only variables can fail to resolve
         variableInstance right = null;
-        try {
-            right = evaluateVariableReference(expr.right, boundStructName, boundIndex, hasBound);
-        } catch (RuntimeException ignored) {}
+        if (isVariable(expr.right)) {
+            try {
+                right = evaluateVariableReference(expr.right, boundStruct, boundIndex, hasBound);
+            } catch (RuntimeException ignored) {}
+        }
 
         boolean isNot = expr.op.toString().contains("!");
 
@@ -259,15 +1152,23 @@ public class Interpreter {
             return isNot ? !eq : eq;
         }
 
-        String opt = expr.right.variableName;
-        int idx = -1;
-        for (int i = 0; i < left.domain.length; i++)
-            if (left.domain[i].equals(opt)) idx = i;
+        int idx = valueIndex(left, expr.right);
 
         boolean eq2 = (left.value == idx);
         return isNot ? !eq2 : eq2;
     }
 
+    // the position of the choice ref names in vi's domain, -1 when it is not one of them
+    private int valueIndex(variableInstance vi, VariableReference ref) {
+        int choice = getCachedModifier(ref).base;
+        return (vi.valueOf != null) ? vi.valueOf.get(choice) : -1;
+    }
+
+    private boolean isVariable(VariableReference ref) {
+        int base = getCachedModifier(ref).base;
+        return at(structMap, base) != null || at(varMap, base) != null;
+    }
+
     // variable reference resolution
     private ParsedModifier getCachedModifier(VariableReference ref) {
         ParsedModifier pm = modifierCache.get(ref);
@@ -278,27 +1179,28 @@ public class Interpreter {
             mod = ref.vrmodifier.get().toString();
 
         pm = parseModifier(mod);
+        pm.base = symbols.intern(ref.variableName);
+        if (pm.fieldName != null) pm.field = symbols.intern(pm.fieldName);
         modifierCache.put(ref, pm);
         return pm;
     }
 
     private variableInstance evaluateVariableReference(VariableReference ref,
-                                                       String boundStructName,
+                                                       int boundStruct,
                                                        int boundIndex,
                                                        boolean hasBound) {
 
+        ParsedModifier pm = getCachedModifier(ref);
         String base = ref.variableName;
 
         // struct variable
-        if (structMap.containsKey(base)) {
-            structInstance[] arr = structMap.get(base);
-            ParsedModifier pm = getCachedModifier(ref);
-
+        structInstance[] arr = at(structMap, pm.base);
+        if (arr != null) {
             Integer index = pm.index;
-            String field = pm.fieldName;
+            int field = pm.field;
 
             if (index == null) {
-                if (hasBound && base.equals(boundStructName))
+                if (hasBound && pm.base == boundStruct)
                     index = boundIndex;
                 else
                     throw new RuntimeException("Missing index for struct " + base);
@@ -308,28 +1210,26 @@ public class Interpreter {
                 throw new RuntimeException("Bad index for struct " + base);
 
             // Recover missing field if needed
-            if (field == null) {
+            if (field < 0) {
                 String s = ref.toString();
-                for (String key : arr[0].fields.keySet())
+                for (String key : arr[0].fieldNames)
                     if (s.contains("." + key))
-                        field = key;
+                        field = symbols.intern(key);
             }
 
-            if (field == null)
+            if (field < 0)
                 throw new RuntimeException("Missing field for struct " + base);
 
             return arr[index].get(field);
         }
 
         // simple array variable
-        if (varMap.containsKey(base)) {
-            variableInstance[] arr = varMap.get(base);
-            ParsedModifier pm = getCachedModifier(ref);
-
+        variableInstance[] vars = at(varMap, pm.base);
+        if (vars != null) {
             if (pm.index == null)
                 throw new RuntimeException("Missing index for simple variable " + base);
 
-            return arr[pm.index];
+            return vars[pm.index];
         }
 
         throw new RuntimeException("Unknown variable: " + base);
@@ -372,49 +1272,4 @@ public class Interpreter {
 
         return new ParsedModifier(idx, field);
     }
-
-    //  to print struct value
-    private void printAllStructVars() {
-        ArrayList<String> names = new ArrayList<>(structMap.keySet());
-        Collections.sort(names);
-
-        for (String name : names) {
-            structInstance[] st = structMap.get(name);
-
-            for (int i = 0; i < st.length; i++) {
-                structInstance si = st[i];
-                List<String> fields = new ArrayList<>();
-                for (var e : si.entries()) fields.add(e.getKey());
-
-                List<String> order = getFieldOrder(name, fields);
-
-                for (String f : order) {
-                    variableInstance v = si.get(f);
-                    if (v != null)
-                        System.out.println(name + "[" + i + "]." + f + " = " + v.valueAsString());
-                }
-                System.out.println();
-            }
-        }
-    }
-
-    private List<String> getFieldOrder(String name, List<String> fields) {
-
-        if (name.equals("Parties")) return Arrays.asList("b", "c", "g", "k");
-        if (name.equals("Puzzles")) return Arrays.asList("p", "d", "n");
-        if (name.equals("Couples")) return Arrays.asList("b", "e", "g", "ic");
-
-        if (name.equals("Stories")) {
-            if (fields.contains("c") && fields.contains("d"))
-                return Arrays.asList("p", "c", "d");  // Dish
-            if (fields.contains("f"))
-                return Arrays.asList("p", "a", "f");  // Friends
-            if (fields.contains("h"))
-                return Arrays.asList("p", "a", "h");  // Pets
-        }
-
-        if (name.equals("Days")) return Arrays.asList("b", "s", "g", "m");
-
-        return fields; // fallback
-    }
 }
@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Large neighborhood search: keep a complete assignment, free one neighborhood of variables
+ * (a struct instance or a field column), fix everything else and re-solve the freed part with
+ * the complete engine under a node limit.
+ *
+ * Neighborhoods are picked around random violated constraints. Every constraint that
+ * mentions a freed variable is hard in the sub-problem; constraints entirely among fixed
+ * variables are left out, and so are clashes between fixed members of an all-different. A
+ * sub-solution replaces the current values when the total violation does not go up. After
+ * STALL_ROUNDS rounds without improvement one more neighborhood is freed at a time, back to
+ * a single one as soon as the violation drops.
+ */
+public class LargeNeighborhoodSearch {
+    private static final int STALL_ROUNDS = 20;
+
+    private final int[] domainSize;
+    private final List<Propagator> constraints;
+    private final List<int[]> neighborhoods;
+    private final SolveOptions options;
+    private final Random random;
+
+    private final int[][] watching;      // variable id -> constraint indices
+    private final int[][] containing;    // variable id -> neighborhood indices
+    private final int[] values;
+    private final int[] violation;       // per constraint
+    private final boolean[] free;
+
+    // constraints already collected for the current neighborhood
+    private final int[] seen;
+    private int seenStamp = 0;
+
+    private long rounds = 0;
+    private long accepted = 0;
+    private int combined = 1;            // neighborhoods freed together
+    private final SearchLimits limits;    // the whole run's; sub-searches count their nodes against it
+
+    public LargeNeighborhoodSearch(int[] domainSize, List<Propagator> constraints,
+                                   List<int[]> neighborhoods, SolveOptions options, SearchLimits limits) {
+        this.domainSize = domainSize;
+        this.constraints = constraints;
+        this.neighborhoods = neighborhoods;
+        this.options = options;
+        this.random = new Random(options.seed);
+        this.limits = limits;
+
+        int n = domainSize.length;
+        watching = invert(n, constraints.size(), c -> constraints.get(c).vars);
+        containing = invert(n, neighborhoods.size(), neighborhoods::get);
+        values = new int[n];
+        violation = new int[constraints.size()];
+        free = new boolean[n];
+        seen = new int[constraints.size()];
+    }
+
+    private interface Members {
+        int[] of(int index);
+    }
+
+    // variable id -> indices of the groups that mention it
+    private static int[][] invert(int n, int groups, Members members) {
+        int[] sizes = new int[n];
+        for (int g = 0; g < groups; g++)
+            for (int v : members.of(g)) sizes[v]++;
+        int[][] out = new int[n][];
+        for (int v = 0; v < n; v++) out[v] = new int[sizes[v]];
+        int[] fill = new int[n];
+        for (int g = 0; g < groups; g++)
+            for (int v : members.of(g)) out[v][fill[v]++] = g;
+        return out;
+    }
+
+    public long rounds() {
+        return rounds;
+    }
+
+    public long accepted() {
+        return accepted;
+    }
+
+    // current assignment, indexed by variable id
+    public int[] values() {
+        return values;
+    }
+
+    // violated constraints in the current assignment
+    public int violated() {
+        int count = 0;
+        for (int v : violation)
+            if (v > 0) count++;
+        return count;
+    }
+
+    // Start from the first value of every variable and improve until every constraint holds or
+    // a limit is hit; true when solved. Running out of rounds counts as a LIMIT stop.
+    public boolean solve() {
+        List<Integer> violated = new ArrayList<>();
+        for (int c = 0; c < violation.length; c++) violation[c] = constraints.get(c).violation(values);
+
+        int stalls = 0;
+        while (!limits.poll()) {
+            violated.clear();
+            for (int c = 0; c < violation.length; c++)
+                if (violation[c] > 0) violated.add(c);
+            if (violated.isEmpty()) return true;
+            if (rounds >= options.lnsRounds) {
+                limits.stop(SearchLimits.Status.LIMIT);
+                break;
+            }
+            rounds++;
+
+            int[] hood = pickNeighborhood(violated);
+            long gain = resolve(hood);
+            if (gain >= 0) accepted++;
+            if (gain > 0) {
+                combined = 1;
+                stalls = 0;
+            } else if (++stalls >= STALL_ROUNDS) {
+                combined = Math.min(combined + 1, neighborhoods.size());
+                stalls = 0;
+            }
+        }
+        return violated() == 0;
+    }
+
+    // the union of `combined` neighborhoods, each around one variable of a random violated
+    // constraint
+    private int[] pickNeighborhood(List<Integer> violated) {
+        List<Integer> hood = new ArrayList<>();
+        for (int k = 0; k < combined; k++) {
+            int[] vars = constraints.get(violated.get(random.nextInt(violated.size()))).vars;
+            int var = vars[random.nextInt(vars.length)];
+            if (containing[var].length == 0) continue;
+            for (int v : neighborhoods.get(containing[var][random.nextInt(containing[var].length)])) {
+                if (free[v]) continue;
+                free[v] = true;
+                hood.add(v);
+            }
+        }
+        int[] out = new int[hood.size()];
+        for (int i = 0; i < out.length; i++) out[i] = hood.get(i);
+        return out;
+    }
+
+    // re-solve one neighborhood (its variables are marked free); returns how much the total
+    // violation dropped, or -1 when nothing was taken over
+    private long resolve(int[] hood) {
+        try {
+            List<Integer> touched = touchedConstraints(hood);
+
+            DomainStore store = new DomainStore(domainSize);
+            PropagationEngine engine = new PropagationEngine(store);
+            for (int v = 0; v < values.length; v++)
+                if (!free[v] && domainSize[v] > 0) store.assign(v, values[v]);
+            if (!addHardConstraints(store, engine, touched)) return -1;
+
+            engine.scheduleAll();
+            if (!engine.propagate()) return -1;
+
+            // a fresh seed per round, so the same neighborhood is not re-solved the same way
+            SolveOptions sub = new SolveOptions();
+            sub.randomize = true;
+            sub.seed = random.nextLong();
+            SearchEngine search = new SearchEngine(engine, hood, sub, limits);
+            search.setNodeLimit(options.lnsNodeLimit);
+
+            int[] found = new int[hood.length];
+            boolean solved = search.solve(s -> {
+                for (int i = 0; i < hood.length; i++) found[i] = s.value(hood[i]);
+                return true;
+            });
+            if (!solved) return -1;
+            return accept(hood, found, touched);
+        } finally {
+            for (int v : hood) free[v] = false;
+        }
+    }
+
+    // constraints that mention at least one freed variable
+    private List<Integer> touchedConstraints(int[] hood) {
+        seenStamp++;
+        List<Integer> touched = new ArrayList<>();
+        for (int v : hood) {
+            for (int c : watching[v]) {
+                if (seen[c] == seenStamp) continue;
+                seen[c] = seenStamp;
+                touched.add(c);
+            }
+        }
+        return touched;
+    }
+
+    // the touched constraints as propagators; an all-different keeps only its freed members,
+    // which lose the values its fixed members hold
+    private boolean addHardConstraints(DomainStore store, PropagationEngine engine, List<Integer> touched) {
+        for (int c : touched) {
+            Propagator p = constraints.get(c);
+            if (!(p instanceof AllDifferentPropagator)) {
+                engine.add(p);
+                continue;
+            }
+
+            int[] members = new int[p.vars.length];
+            int count = 0;
+            int maxSize = 0;
+            for (int v : p.vars) {
+                if (free[v]) {
+                    members[count++] = v;
+                    maxSize = Math.max(maxSize, domainSize[v]);
+                }
+            }
+            for (int v : p.vars) {
+                if (free[v]) continue;
+                for (int i = 0; i < count; i++)
+                    if (values[v] < domainSize[members[i]] && !store.remove(members[i], values[v])) return false;
+            }
+            if (count > 1) engine.add(new AllDifferentPropagator(Arrays.copyOf(members, count), maxSize));
+        }
+        return true;
+    }
+
+    // take the sub-solution unless it raises the total violation of the touched constraints;
+    // returns the drop, or -1 when it was rejected
+    private long accept(int[] hood, int[] found, List<Integer> touched) {
+        int[] old = new int[hood.length];
+        for (int i = 0; i < hood.length; i++) {
+            old[i] = values[hood[i]];
+            values[hood[i]] = found[i];
+        }
+
+        long before = 0, after = 0;
+        int[] updated = new int[touched.size()];
+        for (int k = 0; k < touched.size(); k++) {
+            int c = touched.get(k);
+            before += violation[c];
+            updated[k] = constraints.get(c).violation(values);
+            after += updated[k];
+        }
+
+        if (after > before) {
+            for (int i = 0; i < hood.length; i++) values[hood[i]] = old[i];
+            return -1;
+        }
+        for (int k = 0; k < touched.size(); k++) violation[touched.get(k)] = updated[k];
+        return before - after;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Symmetry breaking between two interchangeable struct instances: the field vector of
+ * {@code a} must be lexicographically less than or equal to that of {@code b}.
+ *
+ * Leading positions fixed to the same value are skipped; at the first open position
+ * a[k] <= b[k] is enforced by bounds. When a[k] can still equal b[k] the following
+ * positions stay free, so the check is sound but not complete until everything is fixed.
+ */
+public class LexLeqPropagator extends Propagator {
+    final int[] a;
+    final int[] b;
+
+    public LexLeqPropagator(int[] a, int[] b) {
+        super(PRIORITY_GLOBAL, concat(a, b), false);
+        this.a = a;
+        this.b = b;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        System.arraycopy(a, 0, out, 0, a.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    @Override
+    public boolean propagate(DomainStore s) {
+        for (int k = 0; k < a.length; k++) {
+            int x = a[k], y = b[k];
+            if (s.isFixed(x) && s.isFixed(y) && s.value(x) == s.value(y)) continue;
+
+            // a[k] <= b[k]
+            int maxY = max(s, y);
+            for (int v = s.next(x, maxY + 1); v >= 0; v = s.next(x, v + 1))
+                if (!s.remove(x, v)) return false;
+            int minX = s.min(x);
+            for (int v = s.min(y); v >= 0 && v < minX; v = s.next(y, v + 1))
+                if (!s.remove(y, v)) return false;
+            return true;
+        }
+        return true;
+    }
+
+    private static int max(DomainStore s, int var) {
+        int last = -1;
+        for (int v = s.min(var); v >= 0; v = s.next(var, v + 1)) last = v;
+        return last;
+    }
+
+    @Override
+    public boolean isSatisfied(int[] values) {
+        for (int k = 0; k < a.length; k++) {
+            if (values[a[k]] < values[b[k]]) return true;
+            if (values[a[k]] > values[b[k]]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "lexleq";
+    }
+}
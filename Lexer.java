@@ -4,26 +4,107 @@ import AST.Token.TokenTypes;
 import java.util.LinkedList;
 import java.util.Stack;
 
+/**
+ * Turns Nusha source into tokens on demand: LexMore appends the next token(s) to a buffer,
+ * nextToken returns them one at a time, and Lex / LexBuffer drain the whole input.
+ */
 public class Lexer {
+    // character classes; '\n' and anything unlisted are OTHER
+    private static final byte OTHER = 0, SPACE = 1, LETTER = 2, DIGIT = 3, PUNCTUATION = 4;
+    private static final byte[] CLASS = new byte[128];
+    private static final TokenTypes[] SINGLE = new TokenTypes[128];   // one-character tokens
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) CLASS[c] = LETTER;
+        for (char c = 'A'; c <= 'Z'; c++) CLASS[c] = LETTER;
+        CLASS['_'] = LETTER;
+        for (char c = '0'; c <= '9'; c++) CLASS[c] = DIGIT;
+        CLASS[' '] = CLASS['\t'] = CLASS['\r'] = SPACE;
+        CLASS['!'] = PUNCTUATION;
+        SINGLE['='] = TokenTypes.EQUAL;
+        SINGLE['.'] = TokenTypes.DOT;
+        SINGLE[','] = TokenTypes.COMMA;
+        SINGLE[':'] = TokenTypes.COLON;
+        SINGLE['{'] = TokenTypes.LEFTCURLY;
+        SINGLE['}'] = TokenTypes.RIGHTCURLY;
+        SINGLE['['] = TokenTypes.LEFTBRACE;
+        SINGLE[']'] = TokenTypes.RIGHTBRACE;
+        for (char c = 0; c < 128; c++) if (SINGLE[c] != null) CLASS[c] = PUNCTUATION;
+    }
+
     private final TextManager tm;
-    private final LinkedList<Token> tokens = new LinkedList<>();
+    private final SymbolTable symbols;   // every identifier and keyword read
     private final Stack<Integer> indentStack = new Stack<>();
 
+    private TokenBuffer tokens;          // where the current LexMore call appends
+    private boolean finished = false;    // end-of-input DEDENTs and NEWLINE emitted
+
+    // nextToken's tokens lexed but not returned yet
+    private TokenBuffer pending;
+    private int pendingPos = 0;
+
     private int line = 1;
     private int charPos = 1;
 
     public Lexer(String input) {
-        this.tm = new TextManager(input);
+        this(new TextManager(input));
+    }
+
+    // lex a CharSequence, Reader or mapped file wrapped in a TextManager
+    public Lexer(TextManager text) {
+        this(text, new SymbolTable());
+    }
+
+    // several lexers (or a later Interpreter) can share one table so ids agree
+    public Lexer(TextManager text, SymbolTable symbols) {
+        this.tm = text;
+        this.symbols = symbols;
         indentStack.push(0); // base indent
     }
 
+    // The classic token list, built from LexBuffer()
     public LinkedList<Token> Lex() throws SyntaxErrorException {
-        while (!tm.isAtEnd()) {
+        return LexBuffer().toLinkedList();
+    }
+
+    // Lex everything into parallel arrays; identifier and number values stay slices of the input
+    public TokenBuffer LexBuffer() throws SyntaxErrorException {
+        TokenBuffer all = newBuffer((tm.getText() == null) ? 1024 : tm.getText().length() / 4);
+        while (LexMore(all)) { /* drain */ }
+        return all;
+    }
+
+    // An empty buffer whose values can refer to this lexer's input (copies for a Reader)
+    public TokenBuffer newBuffer(int capacity) {
+        return new TokenBuffer(tm.getText(), symbols, capacity);
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    // The next token, or null after the last one
+    public Token nextToken() throws SyntaxErrorException {
+        if (pending == null) pending = newBuffer(16);
+        if (pendingPos == pending.size()) {
+            pending.clear();
+            pendingPos = 0;
+            if (!LexMore(pending)) return null;
+        }
+        return pending.token(pendingPos++);
+    }
+
+    // Append the next token, or the few a line break or the end of input produces, to out.
+    // Returns false, adding nothing, once the input is used up.
+    public boolean LexMore(TokenBuffer out) throws SyntaxErrorException {
+        this.tokens = out;
+        int before = out.size();
+        while (!tm.isAtEnd() && out.size() == before) {
             char c = tm.PeekCharacter();
 
             if (c == '\n') {
                 tm.GetCharacter();
-                tokens.add(new Token(TokenTypes.NEWLINE, line, charPos));
+                tokens.add(TokenTypes.NEWLINE, line, charPos);
                 line++;
                 charPos = 1;
 
@@ -41,11 +122,11 @@ public class Lexer {
                 int currentIndent = indentStack.peek();
                 if (spaces > currentIndent) {
                     indentStack.push(spaces);
-                    tokens.add(new Token(TokenTypes.INDENT, line, 1));
+                    tokens.add(TokenTypes.INDENT, line, 1);
                 } else if (spaces < currentIndent) {
                     while (spaces < indentStack.peek()) {
                         indentStack.pop();
-                        tokens.add(new Token(TokenTypes.DEDENT, line, 1));
+                        tokens.add(TokenTypes.DEDENT, line, 1);
                     }
                     if (spaces != indentStack.peek())
                         throw new SyntaxErrorException("Unmatched indentation", line, charPos);
@@ -54,78 +135,102 @@ public class Lexer {
                 continue;
             }
 
-            if (c == ' ' || c == '\t' || c == '\r') {
+            int cls = classOf(c);
+            if (cls == SPACE) {
                 tm.GetCharacter();
                 charPos++;
                 continue;
             }
 
-            char next = tm.PeekCharacter(1);
-            if (c == '=' && next == '>') {
-                tm.GetCharacter(); tm.GetCharacter();
-                tokens.add(new Token(TokenTypes.YIELDS, line, charPos));
-                charPos += 2;
-                continue;
-            }
-            if (c == '!' && next == '=') {
-                tm.GetCharacter(); tm.GetCharacter();
-                tokens.add(new Token(TokenTypes.NOTEQUAL, line, charPos));
-                charPos += 2;
-                continue;
-            }
-
-            switch (c) {
-                case '=': emit(TokenTypes.EQUAL); continue;
-                case '.': emit(TokenTypes.DOT); continue;
-                case ',': emit(TokenTypes.COMMA); continue;
-                case ':': emit(TokenTypes.COLON); continue;
-                case '{': emit(TokenTypes.LEFTCURLY); continue;
-                case '}': emit(TokenTypes.RIGHTCURLY); continue;
-                case '[': emit(TokenTypes.LEFTBRACE); continue;
-                case ']': emit(TokenTypes.RIGHTBRACE); continue;
+            if (cls == PUNCTUATION) {
+                char next = tm.PeekCharacter(1);
+                if (c == '=' && next == '>') {
+                    tm.GetCharacter(); tm.GetCharacter();
+                    tokens.add(TokenTypes.YIELDS, line, charPos);
+                    charPos += 2;
+                    continue;
+                }
+                if (c == '!' && next == '=') {
+                    tm.GetCharacter(); tm.GetCharacter();
+                    tokens.add(TokenTypes.NOTEQUAL, line, charPos);
+                    charPos += 2;
+                    continue;
+                }
+                if (SINGLE[c] != null) {
+                    emit(SINGLE[c]);
+                    continue;
+                }
             }
 
-            if (Character.isLetter(c) || c == '_') {
+            if (cls == LETTER) {
                 int startPos = charPos;
-                StringBuilder buf = new StringBuilder();
-                while (!tm.isAtEnd() && (Character.isLetterOrDigit(tm.PeekCharacter()) || tm.PeekCharacter() == '_')) {
-                    buf.append(tm.PeekCharacter());
+                int start = tm.getPosition();
+                int k;
+                while ((k = classOf(tm.PeekCharacter())) == LETTER || k == DIGIT) {
                     tm.GetCharacter();
                     charPos++;
                 }
-                String word = buf.toString();
-                if (word.equals("var")) tokens.add(new Token(TokenTypes.VAR, line, startPos, word));
-                else if (word.equals("unique")) tokens.add(new Token(TokenTypes.UNIQUE, line, startPos, word));
-                else tokens.add(new Token(TokenTypes.IDENTIFIER, line, startPos, word));
+                int length = tm.getPosition() - start;
+                addSymbol(wordType(start, length, c), start, length, startPos);
                 continue;
             }
 
-            if (Character.isDigit(c)) {
+            if (cls == DIGIT) {
                 int startPos = charPos;
-                StringBuilder buf = new StringBuilder();
-                while (!tm.isAtEnd() && Character.isDigit(tm.PeekCharacter())) {
-                    buf.append(tm.PeekCharacter());
+                int start = tm.getPosition();
+                while (classOf(tm.PeekCharacter()) == DIGIT) {
                     tm.GetCharacter();
                     charPos++;
                 }
-                tokens.add(new Token(TokenTypes.NUMBER, line, startPos, buf.toString()));
+                addValue(TokenTypes.NUMBER, start, tm.getPosition() - start, startPos);
                 continue;
             }
 
             throw new SyntaxErrorException("Unexpected character: " + c, line, charPos);
         }
 
-        while (indentStack.size() > 1) {
-            indentStack.pop();
-            tokens.add(new Token(TokenTypes.DEDENT, line, 1));
+        if (tm.isAtEnd() && !finished) {
+            while (indentStack.size() > 1) {
+                indentStack.pop();
+                tokens.add(TokenTypes.DEDENT, line, 1);
+            }
+            tokens.add(TokenTypes.NEWLINE, line, charPos);
+            finished = true;
         }
-        tokens.add(new Token(TokenTypes.NEWLINE, line, charPos));
+        return out.size() > before;
+    }
+
+    // var and unique, told apart from identifiers by length and first character before comparing
+    private TokenTypes wordType(int start, int length, char first) {
+        if (length == 3 && first == 'v' && tm.regionEquals(start, 3, "var")) return TokenTypes.VAR;
+        if (length == 6 && first == 'u' && tm.regionEquals(start, 6, "unique")) return TokenTypes.UNIQUE;
+        return TokenTypes.IDENTIFIER;
+    }
+
+    // ASCII from the table, the rest through Character (letters and digits of any script)
+    private static int classOf(char c) {
+        if (c < 128) return CLASS[c];
+        if (Character.isLetter(c)) return LETTER;
+        if (Character.isDigit(c)) return DIGIT;
+        return OTHER;
+    }
+
+    // a token whose value is input[start, start + length): a slice, or a copy for a Reader
+    private void addValue(TokenTypes type, int start, int length, int column) {
+        if (tm.getText() != null) tokens.add(type, start, length, line, column);
+        else tokens.add(type, tm.substring(start, start + length), line, column);
+    }
 
-        return tokens;
+    // a word token, interned: a hash probe when the word was seen before
+    private void addSymbol(TokenTypes type, int start, int length, int column) {
+        int symbol = (tm.getText() != null)
+                ? symbols.intern(tm.getText(), start, length)
+                : symbols.intern(tm.substring(start, start + length));
+        tokens.addSymbol(type, symbol, line, column);
     }
 
     private void emit(TokenTypes type) {
-        tokens.add(new Token(type, line, charPos));
+        tokens.add(type, line, charPos);
         tm.GetCharacter();
         charPos++;
     }
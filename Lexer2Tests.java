@@ -2,6 +2,17 @@ import AST.Token;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 
 public class Lexer2Tests {
 
@@ -12,6 +23,7 @@ public class Lexer2Tests {
                 "var Blocks : Block[4]\n"+
                 "";
         var tokens = new Lexer(code).Lex();
+        assertParallelLexMatches(code, tokens);
         Assertions.assertEquals(Token.TokenTypes.IDENTIFIER, tokens.get(0).Type);
         Assertions.assertEquals("Shape",  tokens.get(0).Value.orElseThrow());
         Assertions.assertEquals(Token.TokenTypes.EQUAL, tokens.get(1).Type);
@@ -68,6 +80,7 @@ public class Lexer2Tests {
                 "    Blocks.c = Blue\n"+
                 "";
         var tokens = new Lexer(code).Lex();
+        assertParallelLexMatches(code, tokens);
         Assertions.assertEquals(Token.TokenTypes.IDENTIFIER, tokens.get(0).Type);
         Assertions.assertEquals("Blocks",  tokens.get(0).Value.orElseThrow());
         Assertions.assertEquals(Token.TokenTypes.LEFTBRACE, tokens.get(1).Type);
@@ -152,6 +165,7 @@ public class Lexer2Tests {
                 "    Stories.p != Fish\n"+
                 "";
         var tokens = new Lexer(code).Lex();
+        assertParallelLexMatches(code, tokens);
         Assertions.assertEquals(Token.TokenTypes.IDENTIFIER, tokens.get(0).Type);
         Assertions.assertEquals("Author",  tokens.get(0).Value.orElseThrow());
         Assertions.assertEquals(Token.TokenTypes.EQUAL, tokens.get(1).Type);
@@ -425,6 +439,7 @@ public class Lexer2Tests {
                 "    Stories.p != Spaceship\n"+
                 "";
         var tokens = new Lexer(code).Lex();
+        assertParallelLexMatches(code, tokens);
         Assertions.assertEquals(Token.TokenTypes.IDENTIFIER, tokens.get(0).Type);
         Assertions.assertEquals("Author",  tokens.get(0).Value.orElseThrow());
         Assertions.assertEquals(Token.TokenTypes.EQUAL, tokens.get(1).Type);
@@ -685,4 +700,205 @@ public class Lexer2Tests {
         Assertions.assertEquals(Token.TokenTypes.NEWLINE, tokens.get(180).Type);
     }
 
+    @Test
+    public void TestParallelLexerEdges() throws Exception {
+        String[] codes = {
+                "A = {a, b}\nR = [A x]\nvar Rs : R[2]\nRs.x = a =>\n    Rs.x != b\n\n\nRs[0].x = a\n",
+                "A = {a, b}\r\nvar As : A[12]\r\n\r\nAs[10] = b\r\n",
+                "A = {a, b}\nvar As : A[1]\nAs[0] = a =>\n    As[0] != b",
+                "",
+        };
+        for (String code : codes) assertParallelLexMatches(code, new Lexer(code).Lex());
+
+        String bad = "A = {a, b}\nvar As : A[1]\nAs[0] = $\n";
+        String expected = Assertions.assertThrows(SyntaxErrorException.class, () -> new Lexer(bad).Lex()).toString();
+        String actual = Assertions.assertThrows(SyntaxErrorException.class,
+                () -> new ParallelLexer(1, ForkJoinPool.commonPool()).lex(bad)).toString();
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void TestReaderAndMappedInput() throws Exception {
+        // one line longer than a 64K Reader chunk, and a last line without its newline
+        var choices = new StringBuilder("A = {a0");
+        for (int i = 1; choices.length() < 150_000; i++) choices.append(", a").append(i);
+        String[] codes = {
+                choices + "}\nvar As : A[2]\nAs[0] = a7 =>\n    As[1] != a70000\nAs[1] != a3",
+                "A = {a, b}\r\nvar As : A[12]\r\n\r\nAs[10] = b\r\n",
+                "",
+        };
+        for (String code : codes) {
+            var expected = new Lexer(code).Lex();
+            assertSameTokens(expected, new Lexer(new TextManager(new StringReader(code))).Lex());
+            // a Reader that returns a few characters per call
+            var slow = new FilterReader(new StringReader(code)) {
+                @Override
+                public int read(char[] buffer, int offset, int length) throws IOException {
+                    return super.read(buffer, offset, Math.min(length, 7));
+                }
+            };
+            assertSameTokens(expected, new Lexer(new TextManager(slow)).Lex());
+
+            Path file = Files.createTempFile("lexer", ".nusha");
+            try (var channel = FileChannel.open(Files.writeString(file, code))) {
+                assertSameTokens(expected, new Lexer(new TextManager(channel)).Lex());
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void TestNonAsciiLexer() throws Exception {
+        // accented, Greek and CJK letters and an Arabic-Indic digit, written as escapes
+        var code = "Citt\u00e0 = {Z\u00fcrich, \u00d1and\u00fa, \u6771\u4eac}\nvar \u03a8s : Citt\u00e0[\u0663]\n";
+        var tokens = new Lexer(code).Lex();
+        assertParallelLexMatches(code, tokens);
+        Assertions.assertEquals("Citt\u00e0", tokens.get(0).Value.orElseThrow());
+        Assertions.assertEquals("Z\u00fcrich", tokens.get(3).Value.orElseThrow());
+        Assertions.assertEquals("\u00d1and\u00fa", tokens.get(5).Value.orElseThrow());
+        Assertions.assertEquals("\u6771\u4eac", tokens.get(7).Value.orElseThrow());
+        Assertions.assertEquals(27, tokens.get(8).ColumnNumber);
+        Assertions.assertEquals(Token.TokenTypes.VAR, tokens.get(10).Type);
+        Assertions.assertEquals("\u03a8s", tokens.get(11).Value.orElseThrow());
+        Assertions.assertEquals(Token.TokenTypes.NUMBER, tokens.get(15).Type);
+        Assertions.assertEquals("\u0663", tokens.get(15).Value.orElseThrow());
+
+        Path file = Files.createTempFile("lexer", ".nusha");
+        try (var channel = FileChannel.open(Files.writeString(file, code))) {
+            assertSameTokens(tokens, new Lexer(new TextManager(channel)).Lex());
+        } finally {
+            Files.delete(file);
+        }
+
+        var ex = Assertions.assertThrows(SyntaxErrorException.class, () -> new Lexer("A = {a\u20ac}\n").Lex());
+        Assertions.assertTrue(ex.getMessage().contains("\u20ac"));
+    }
+
+    // random lines of words, numbers and punctuation, ASCII or not: the lexer must give back
+    // the tokens they were made of, at the columns they were put
+    @Test
+    public void TestLexerFuzz() throws Exception {
+        String letters = "abcxyzABCXYZ_\u00e9\u00df\u00c6\u03a9\u0436\u044f\u6771";
+        String digits = "0123456789\u0663\u096d";
+        String[] symbols = { "=", "!=", "=>", ".", ",", ":", "{", "}", "[", "]" };
+        Token.TokenTypes[] symbolTypes = {
+                Token.TokenTypes.EQUAL, Token.TokenTypes.NOTEQUAL, Token.TokenTypes.YIELDS, Token.TokenTypes.DOT,
+                Token.TokenTypes.COMMA, Token.TokenTypes.COLON, Token.TokenTypes.LEFTCURLY,
+                Token.TokenTypes.RIGHTCURLY, Token.TokenTypes.LEFTBRACE, Token.TokenTypes.RIGHTBRACE };
+        var random = new Random(45);
+        for (int round = 0; round < 20; round++) {
+            var code = new StringBuilder();
+            var expected = new LinkedList<Token>();
+            int lines = 1 + random.nextInt(30);
+            for (int line = 1; line <= lines; line++) {
+                int column = 1;
+                for (int n = 1 + random.nextInt(8); n > 0; n--) {
+                    // lines start unindented; tabs and carriage returns count as one column
+                    if (column > 1) {
+                        String gap = random.nextBoolean() ? " " : (random.nextBoolean() ? "\t" : "  \r");
+                        code.append(gap);
+                        column += gap.length();
+                    }
+                    String text;
+                    Token token;
+                    switch (random.nextInt(3)) {
+                        case 0 -> {
+                            var word = new StringBuilder().append(letters.charAt(random.nextInt(letters.length())));
+                            for (int k = random.nextInt(6); k > 0; k--) {
+                                String from = random.nextBoolean() ? letters : digits;
+                                word.append(from.charAt(random.nextInt(from.length())));
+                            }
+                            text = word.toString();
+                            token = new Token(Token.TokenTypes.IDENTIFIER, line, column, text);
+                        }
+                        case 1 -> {
+                            var number = new StringBuilder();
+                            for (int k = 1 + random.nextInt(4); k > 0; k--)
+                                number.append(digits.charAt(random.nextInt(digits.length())));
+                            text = number.toString();
+                            token = new Token(Token.TokenTypes.NUMBER, line, column, text);
+                        }
+                        default -> {
+                            int k = random.nextInt(symbols.length);
+                            text = symbols[k];
+                            token = new Token(symbolTypes[k], line, column);
+                        }
+                    }
+                    code.append(text);
+                    expected.add(token);
+                    column += text.length();
+                }
+                expected.add(new Token(Token.TokenTypes.NEWLINE, line, column));
+                code.append('\n');
+            }
+            expected.add(new Token(Token.TokenTypes.NEWLINE, lines + 1, 1));
+
+            var tokens = new Lexer(code.toString()).Lex();
+            assertSameTokens(expected, tokens);
+            assertSameTokens(expected, new Lexer(new TextManager(new StringReader(code.toString()))).Lex());
+            assertParallelLexMatches(code.toString(), tokens);
+        }
+    }
+
+    @Test
+    public void TestSymbolTable() throws Exception {
+        var table = new SymbolTable();
+        Assertions.assertEquals(0, table.intern("Aa"));
+        Assertions.assertEquals(1, table.intern("BB"));   // same String hash as "Aa"
+        Assertions.assertEquals(0, table.intern("xAay", 1, 2));
+        Assertions.assertEquals(1, table.find("BB"));
+        Assertions.assertEquals(-1, table.find("Ab"));
+        Assertions.assertEquals(2, table.size());
+
+        // against a HashMap, through several rehashes
+        var ids = new HashMap<String, Integer>();
+        var random = new Random(46);
+        for (int i = 0; i < 20_000; i++) {
+            String name = Integer.toString(random.nextInt(5_000), 36);
+            Integer expected = ids.computeIfAbsent(name, k -> ids.size() + 2);
+            Assertions.assertEquals(expected.intValue(), table.intern(name));
+        }
+        Assertions.assertEquals(ids.size() + 2, table.size());
+        for (var e : ids.entrySet()) {
+            Assertions.assertEquals(e.getValue().intValue(), table.find(e.getKey()));
+            Assertions.assertEquals(e.getKey(), table.name(e.getValue()));
+        }
+    }
+
+    @Test
+    public void TestSharedSymbols() throws Exception {
+        var symbols = new SymbolTable();
+        var first = new Lexer(new TextManager("A = {a1, a2}\nvar As : A[2]\n"), symbols).LexBuffer();
+        var second = new Lexer(new TextManager("As[0] != a2\n"), symbols).LexBuffer();
+        Assertions.assertSame(symbols, first.symbolTable());
+        Assertions.assertSame(symbols, second.symbolTable());
+        Assertions.assertEquals(first.symbol(9), second.symbol(0));      // As
+        Assertions.assertEquals(first.symbol(5), second.symbol(5));      // a2
+        Assertions.assertSame(first.value(5), second.value(5));
+        Assertions.assertEquals("a2", symbols.name(second.symbol(5)));
+
+        var lexer = new Lexer("A = {a1, a2}\n");
+        lexer.Lex();
+        Assertions.assertEquals(0, lexer.getSymbols().find("A"));
+        Assertions.assertEquals(2, lexer.getSymbols().find("a2"));
+    }
+
+    // chunk size 1 splits before every top-level line; the tokens must match the sequential ones
+    private static void assertParallelLexMatches(String code, LinkedList<Token> expected) throws Exception {
+        assertSameTokens(expected, new ParallelLexer(1, ForkJoinPool.commonPool()).lex(code).toLinkedList());
+    }
+
+    private static void assertSameTokens(LinkedList<Token> expected, LinkedList<Token> tokens) {
+        Assertions.assertEquals(expected.size(), tokens.size());
+        var actual = tokens.iterator();
+        for (Token e : expected) {
+            Token t = actual.next();
+            Assertions.assertEquals(e.Type, t.Type);
+            Assertions.assertEquals(e.LineNumber, t.LineNumber);
+            Assertions.assertEquals(e.ColumnNumber, t.ColumnNumber);
+            Assertions.assertEquals(e.Value, t.Value);
+        }
+    }
+
 }
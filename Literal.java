@@ -0,0 +1,110 @@
+/**
+ * One compiled comparison from a rule: {@code x = y}, {@code x != y}, {@code x = c} or {@code x != c},
+ * where x and y are variable ids in a DomainStore and c is an index into x's choice list.
+ *
+ * Like the interpreter, two variables are compared by value index. A constant that is not
+ * one of x's choices is stored as -1, which no value ever equals.
+ */
+public final class Literal {
+    public static final int ENTAILED = 1;
+    public static final int UNKNOWN = 0;
+    public static final int DISENTAILED = -1;
+
+    final int x;
+    final int y;          // -1 when comparing against a constant
+    final int constant;
+    final boolean not;
+
+    private Literal(int x, int y, int constant, boolean not) {
+        this.x = x;
+        this.y = y;
+        this.constant = constant;
+        this.not = not;
+    }
+
+    public static Literal vars(int x, boolean not, int y) {
+        return new Literal(x, y, -1, not);
+    }
+
+    public static Literal constant(int x, boolean not, int constant) {
+        return new Literal(x, -1, constant, not);
+    }
+
+    public boolean isConstant() {
+        return y < 0;
+    }
+
+    // The same literal over the representatives of merged variables
+    public Literal remap(UnionFind classes) {
+        int rx = classes.find(x);
+        int ry = isConstant() ? y : classes.find(y);
+        if (rx == x && ry == y) return this;
+        return new Literal(rx, ry, constant, not);
+    }
+
+    // ---------- evaluation on domains ----------
+    public int status(DomainStore s) {
+        int eq = equalityStatus(s);
+        return not ? -eq : eq;
+    }
+
+    // status of the plain equality x = y / x = c, ignoring `not`
+    private int equalityStatus(DomainStore s) {
+        if (isConstant()) {
+            if (!s.contains(x, constant)) return DISENTAILED;
+            return s.isFixed(x) ? ENTAILED : UNKNOWN;
+        }
+        if (x == y) return ENTAILED;
+        if (s.isFixed(x) && s.isFixed(y)) return s.value(x) == s.value(y) ? ENTAILED : DISENTAILED;
+        return intersects(s) ? UNKNOWN : DISENTAILED;
+    }
+
+    private boolean intersects(DomainStore s) {
+        int words = Math.min(s.wordCount(x), s.wordCount(y));
+        for (int w = 0; w < words; w++)
+            if ((s.word(x, w) & s.word(y, w)) != 0) return true;
+        return false;
+    }
+
+    // Make the literal true; false on a wipe-out
+    public boolean enforce(DomainStore s) {
+        return not ? enforceDifferent(s) : enforceEqual(s);
+    }
+
+    // Make the literal false; false on a wipe-out
+    public boolean enforceNegation(DomainStore s) {
+        return not ? enforceEqual(s) : enforceDifferent(s);
+    }
+
+    private boolean enforceEqual(DomainStore s) {
+        if (isConstant()) return s.assign(x, constant);
+        if (x == y) return true;
+        return keepCommon(s, x, y) && keepCommon(s, y, x);
+    }
+
+    private boolean enforceDifferent(DomainStore s) {
+        if (isConstant()) return constant < 0 || s.remove(x, constant);
+        if (x == y) return false;
+        if (s.isFixed(y) && !s.remove(x, s.value(y))) return false;
+        if (s.isFixed(x) && !s.remove(y, s.value(x))) return false;
+        return true;
+    }
+
+    // remove from a every value that b does not have
+    private static boolean keepCommon(DomainStore s, int a, int b) {
+        for (int v = s.min(a); v >= 0; v = s.next(a, v + 1))
+            if (!s.contains(b, v) && !s.remove(a, v)) return false;
+        return s.size(a) > 0;
+    }
+
+    // ---------- evaluation on a complete assignment ----------
+    public boolean holds(int[] values) {
+        boolean eq = isConstant() ? values[x] == constant : values[x] == values[y];
+        return not != eq;
+    }
+
+    @Override
+    public String toString() {
+        return "v" + x + (not ? " != " : " = ") + (isConstant() ? "#" + constant : "v" + y);
+    }
+}
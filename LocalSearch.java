@@ -0,0 +1,339 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Min-conflicts local search with a tabu list over compiled rule checks.
+ *
+ * Every variable always has a value. Each step takes a random violated constraint, picks one
+ * of its variables and moves it to the value with the lowest total violation, skipping values
+ * that are tabu unless they beat the best assignment seen so far. Variables of an all-different
+ * column with exactly as many values as members start as a permutation and only swap values
+ * with each other, so that column never breaks. Violations are kept per constraint and the
+ * number of violated constraints per variable, and a move only re-evaluates the constraints
+ * that mention the moved variables.
+ */
+public class LocalSearch {
+    private static final int WALK_PERCENT = 5;
+
+    private final int[] domainSize;
+    private final List<Propagator> constraints;
+    private final SolveOptions options;
+    private final Random random;
+
+    private final int[][] watching;      // variable id -> constraint indices
+    private final int[] values;
+    private final int[] violation;       // per constraint
+    private final int[] conflicts;       // per variable: violated constraints that mention it
+    private long total = 0;              // sum of violations
+
+    // violated constraints, with each one's position for O(1) removal
+    private final int[] violated;
+    private final int[] violatedPos;
+    private int violatedCount = 0;
+
+    // value counts of all-different constraints (null for the others), so their delta is O(1)
+    private final int[][] counts;
+
+    // permutation columns, and the column of each variable (-1 for none)
+    private final List<int[]> permutations = new ArrayList<>();
+    private final int[] permutationOf;
+
+    // constraints already counted while evaluating a swap
+    private final int[] seen;
+    private int seenStamp = 0;
+
+    private final int[] tabuOffset;
+    private final long[] tabuUntil;      // per (variable, value): first step it may be taken again
+
+    private final SearchLimits limits;    // the whole run's time and cancellation limits
+
+    private int[] best;
+    private long bestTotal = Long.MAX_VALUE;
+    private int bestViolated = Integer.MAX_VALUE;
+    private long steps = 0;
+
+    public LocalSearch(int[] domainSize, List<Propagator> constraints, SolveOptions options,
+                       SearchLimits limits) {
+        this.domainSize = domainSize;
+        this.constraints = constraints;
+        this.options = options;
+        this.random = new Random(options.seed);
+        this.limits = limits;
+
+        int n = domainSize.length;
+        List<List<Integer>> lists = new ArrayList<>();
+        for (int v = 0; v < n; v++) lists.add(new ArrayList<>());
+        for (int c = 0; c < constraints.size(); c++)
+            for (int v : constraints.get(c).vars) lists.get(v).add(c);
+        watching = new int[n][];
+        for (int v = 0; v < n; v++) {
+            watching[v] = new int[lists.get(v).size()];
+            for (int k = 0; k < watching[v].length; k++) watching[v][k] = lists.get(v).get(k);
+        }
+
+        values = new int[n];
+        violation = new int[constraints.size()];
+        conflicts = new int[n];
+        violated = new int[constraints.size()];
+        violatedPos = new int[constraints.size()];
+        seen = new int[constraints.size()];
+
+        counts = new int[constraints.size()][];
+        permutationOf = new int[n];
+        Arrays.fill(permutationOf, -1);
+        for (int c = 0; c < constraints.size(); c++) {
+            if (!(constraints.get(c) instanceof AllDifferentPropagator)) continue;
+            int[] vars = constraints.get(c).vars;
+            int max = 0;
+            boolean permutation = vars.length > 1;
+            for (int v : vars) {
+                max = Math.max(max, domainSize[v]);
+                if (domainSize[v] != vars.length || permutationOf[v] >= 0) permutation = false;
+            }
+            counts[c] = new int[Math.max(max, 1)];   // empty domains still hold the value 0
+            if (permutation) {
+                for (int v : vars) permutationOf[v] = permutations.size();
+                permutations.add(vars);
+            }
+        }
+
+        tabuOffset = new int[n];
+        int total = 0;
+        for (int v = 0; v < n; v++) {
+            tabuOffset[v] = total;
+            total += domainSize[v];
+        }
+        tabuUntil = new long[total];
+    }
+
+    public long steps() {
+        return steps;
+    }
+
+    // best assignment found, indexed by variable id
+    public int[] best() {
+        return best;
+    }
+
+    // violated constraints in the best assignment
+    public int bestViolated() {
+        return bestViolated;
+    }
+
+    // Run until every constraint holds or a limit is hit; true when solved. Running out of
+    // steps counts as a LIMIT stop.
+    public boolean solve() {
+        initialAssignment();
+        for (int c = 0; c < violation.length; c++) {
+            if (counts[c] != null)
+                for (int v : constraints.get(c).vars) counts[c][values[v]]++;
+            setViolation(c, constraints.get(c).violation(values));
+        }
+        recordBest();
+
+        // a variable without values has no assignment that could hold
+        for (int size : domainSize)
+            if (size == 0) return false;
+
+        while (violatedCount > 0) {
+            if (steps >= options.maxSteps) {
+                limits.stop(SearchLimits.Status.LIMIT);
+                break;
+            }
+            if ((steps & 1023) == 0 && limits.poll()) break;
+            steps++;
+
+            Propagator c = constraints.get(violated[random.nextInt(violatedCount)]);
+            int var = chooseVariable(c);
+            if (var < 0) continue;
+
+            // an occasional random walk step gets out of plateaus the tabu list cannot leave
+            boolean walk = random.nextInt(100) < WALK_PERCENT;
+            if (permutationOf[var] >= 0) {
+                int[] members = permutations.get(permutationOf[var]);
+                swap(var, walk ? members[random.nextInt(members.length)] : chooseSwap(var, members));
+            } else {
+                move(var, walk ? random.nextInt(domainSize[var]) : chooseValue(var));
+            }
+            if (total < bestTotal) recordBest();
+        }
+        return bestViolated == 0;
+    }
+
+    // random values, with every permutation column shuffled
+    private void initialAssignment() {
+        for (int v = 0; v < values.length; v++)
+            values[v] = (domainSize[v] > 0) ? random.nextInt(domainSize[v]) : 0;
+
+        for (int[] members : permutations) {
+            for (int i = 0; i < members.length; i++) values[members[i]] = i;
+            for (int i = members.length - 1; i > 0; i--) swapValues(members[i], members[random.nextInt(i + 1)]);
+        }
+    }
+
+    // the variable of c that sits in the most violated constraints, ties broken at random
+    private int chooseVariable(Propagator c) {
+        int choice = -1;
+        int most = -1;
+        int ties = 0;
+        for (int v : c.vars) {
+            if (domainSize[v] < 2) continue;
+            if (conflicts[v] > most) {
+                most = conflicts[v];
+                choice = v;
+                ties = 1;
+            } else if (conflicts[v] == most && random.nextInt(++ties) == 0) {
+                choice = v;
+            }
+        }
+        return choice;
+    }
+
+    // the non-tabu value with the lowest total violation, ties broken at random
+    private int chooseValue(int var) {
+        int current = values[var];
+        long bestDelta = Long.MAX_VALUE;
+        int choice = current;
+        int ties = 0;
+
+        for (int v = 0; v < domainSize[var]; v++) {
+            if (v == current) continue;
+            long delta = delta(var, v);
+            if (isTabu(var, v) && total + delta >= bestTotal) continue;   // aspiration only
+
+            if (delta < bestDelta) {
+                bestDelta = delta;
+                choice = v;
+                ties = 1;
+            } else if (delta == bestDelta && random.nextInt(++ties) == 0) {
+                choice = v;
+            }
+        }
+        return choice;
+    }
+
+    // the column member to exchange values with, chosen the same way
+    private int chooseSwap(int var, int[] members) {
+        long bestDelta = Long.MAX_VALUE;
+        int choice = var;
+        int ties = 0;
+
+        for (int other : members) {
+            if (other == var) continue;
+            long delta = swapDelta(var, other);
+            if (isTabu(var, values[other]) && total + delta >= bestTotal) continue;
+
+            if (delta < bestDelta) {
+                bestDelta = delta;
+                choice = other;
+                ties = 1;
+            } else if (delta == bestDelta && random.nextInt(++ties) == 0) {
+                choice = other;
+            }
+        }
+        return choice;
+    }
+
+    private boolean isTabu(int var, int v) {
+        return tabuUntil[tabuOffset[var] + v] > steps;
+    }
+
+    // change in total violation if var took value v
+    private long delta(int var, int v) {
+        int old = values[var];
+        values[var] = v;
+        long delta = 0;
+        for (int c : watching[var]) {
+            if (counts[c] != null) delta += counts[c][v] - (counts[c][old] - 1);
+            else delta += constraints.get(c).violation(values) - violation[c];
+        }
+        values[var] = old;
+        return delta;
+    }
+
+    // change in total violation if a and b exchanged values; a constraint on both counts once
+    private long swapDelta(int a, int b) {
+        swapValues(a, b);
+        seenStamp++;
+        long delta = 0;
+        for (int c : watching[a]) {
+            seen[c] = seenStamp;
+            delta += swapDelta(c, a, b);
+        }
+        for (int c : watching[b])
+            if (seen[c] != seenStamp) delta += swapDelta(c, b, a);
+        swapValues(a, b);
+        return delta;
+    }
+
+    // delta of constraint c, with the values already exchanged
+    private long swapDelta(int c, int var, int other) {
+        if (counts[c] == null) return constraints.get(c).violation(values) - violation[c];
+
+        // an all-different over both keeps the same multiset of values
+        for (int v : constraints.get(c).vars)
+            if (v == other) return 0;
+        int now = values[var];
+        int was = values[other];
+        return (now == was) ? 0 : counts[c][now] - (counts[c][was] - 1);
+    }
+
+    private void swapValues(int a, int b) {
+        int t = values[a];
+        values[a] = values[b];
+        values[b] = t;
+    }
+
+    private void move(int var, int v) {
+        int old = values[var];
+        if (v == old) return;
+        tabuUntil[tabuOffset[var] + old] = steps + options.tabuTenure;
+        values[var] = v;
+        for (int c : watching[var]) {
+            if (counts[c] != null) {
+                int amount = violation[c] + counts[c][v] - (counts[c][old] - 1);
+                counts[c][old]--;
+                counts[c][v]++;
+                setViolation(c, amount);
+            } else {
+                setViolation(c, constraints.get(c).violation(values));
+            }
+        }
+    }
+
+    // two single moves; in the shared column the second one undoes the first one's damage
+    private void swap(int a, int b) {
+        if (a == b) return;
+        int va = values[a];
+        int vb = values[b];
+        move(a, vb);
+        move(b, va);
+    }
+
+    private void setViolation(int c, int amount) {
+        int before = violation[c];
+        if (before == amount) return;
+        total += amount - before;
+        violation[c] = amount;
+
+        if (before == 0) {
+            violatedPos[c] = violatedCount;
+            violated[violatedCount++] = c;
+            for (int v : constraints.get(c).vars) conflicts[v]++;
+        } else if (amount == 0) {
+            int pos = violatedPos[c];
+            int last = violated[--violatedCount];
+            violated[pos] = last;
+            violatedPos[last] = pos;
+            for (int v : constraints.get(c).vars) conflicts[v]--;
+        }
+    }
+
+    private void recordBest() {
+        bestTotal = total;
+        bestViolated = violatedCount;
+        best = values.clone();
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/**
+ * Backend for classic logic-grid puzzles: one struct array of n instances where every field
+ * is unique and has exactly n values.
+ *
+ * Attribute 0 is the instance index and attribute f + 1 is field f. For every ordered pair of
+ * attributes (a, b) there is an n x n boolean matrix, one long per row, whose bit y of row x
+ * says "the instance with a = x may have b = y". Clues are cell eliminations. Deduction then
+ * runs to a fixpoint with bit operations: a singleton row clears its column, and transitivity
+ * keeps only cells that some third attribute can connect. When deduction stalls, the solver
+ * branches on the index/field cells in the interpreter's odometer order.
+ */
+public class LogicGridSolver {
+    public static final int MAX_SIZE = 64;
+
+    // Called with values[i][f] for each complete grid; false rejects it and search goes on
+    public interface Verifier {
+        boolean accept(int[][] values);
+    }
+
+    private final int n;
+    private final int attributes;
+    private long[] cells;
+    private boolean contradiction = false;
+
+    private long nodes = 0;
+    private SearchLimits limits = null;
+
+    public LogicGridSolver(int n, int fields) {
+        if (n < 1 || n > MAX_SIZE) throw new IllegalArgumentException("Grid size must be 1.." + MAX_SIZE);
+        this.n = n;
+        this.attributes = fields + 1;
+        this.cells = new long[attributes * attributes * n];
+        long full = (n == 64) ? -1L : (1L << n) - 1;
+        Arrays.fill(cells, full);
+    }
+
+    public long nodes() {
+        return nodes;
+    }
+
+    // stop (returning no grid) once one of the run's limits is hit
+    public void setLimits(SearchLimits limits) {
+        this.limits = limits;
+    }
+
+    // ---------- clues ----------
+
+    // the instance with a = x cannot have b = y
+    public void eliminate(int a, int x, int b, int y) {
+        if (!clear(a, x, b, y)) contradiction = true;
+    }
+
+    // the instance with a = x has b = y
+    public void fix(int a, int x, int b, int y) {
+        if (!pair(a, x, b, y)) contradiction = true;
+    }
+
+    // a clue that can never hold, e.g. a constant that is not one of the field's choices
+    public void fail() {
+        contradiction = true;
+    }
+
+    // ---------- solving ----------
+
+    // First complete grid the verifier accepts, as values[i][f], or null
+    public int[][] solve(Verifier verifier) {
+        if (contradiction || !deduce()) return null;
+        return search(verifier);
+    }
+
+    private int[][] search(Verifier verifier) {
+        if (limits != null && limits.node()) return null;
+        nodes++;
+
+        // branch on the last undecided (instance, field) cell, like the odometer's top digit
+        int bi = -1, bf = -1;
+        for (int i = n - 1; i >= 0 && bi < 0; i--) {
+            for (int f = attributes - 1; f >= 1; f--) {
+                if (Long.bitCount(row(0, i, f)) > 1) {
+                    bi = i;
+                    bf = f;
+                    break;
+                }
+            }
+        }
+
+        if (bi < 0) {
+            int[][] values = extract();
+            return (verifier == null || verifier.accept(values)) ? values : null;
+        }
+
+        long options = row(0, bi, bf);
+        while (options != 0) {
+            int y = Long.numberOfTrailingZeros(options);
+            options &= options - 1;
+
+            long[] saved = cells.clone();
+            if (pair(0, bi, bf, y) && deduce()) {
+                int[][] found = search(verifier);
+                if (found != null) return found;
+            }
+            cells = saved;
+        }
+        return null;
+    }
+
+    private int[][] extract() {
+        int[][] values = new int[n][attributes - 1];
+        for (int i = 0; i < n; i++)
+            for (int f = 1; f < attributes; f++)
+                values[i][f - 1] = Long.numberOfTrailingZeros(row(0, i, f));
+        return values;
+    }
+
+    // singleton and transitivity deductions to a fixpoint; false on an empty row
+    private boolean deduce() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int a = 0; a < attributes; a++) {
+                for (int b = 0; b < attributes; b++) {
+                    if (a == b) continue;
+                    for (int x = 0; x < n; x++) {
+                        long r = row(a, x, b);
+                        if (r == 0) return false;
+
+                        // transitivity through every third attribute c
+                        for (int c = 0; c < attributes; c++) {
+                            if (c == a || c == b) continue;
+                            long reach = 0;
+                            long via = row(a, x, c);
+                            while (via != 0) {
+                                int z = Long.numberOfTrailingZeros(via);
+                                via &= via - 1;
+                                reach |= row(c, z, b);
+                            }
+                            r &= reach;
+                        }
+                        if (r == 0) return false;
+                        if (r != row(a, x, b)) {
+                            if (!restrict(a, x, b, r)) return false;
+                            changed = true;
+                        }
+
+                        // a singleton row owns its value: clear it from the other rows
+                        if (Long.bitCount(r) == 1) {
+                            int y = Long.numberOfTrailingZeros(r);
+                            for (int x2 = 0; x2 < n; x2++) {
+                                if (x2 == x || (row(a, x2, b) & r) == 0) continue;
+                                if (!clear(a, x2, b, y)) return false;
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // ---------- matrix access ----------
+    private int index(int a, int x, int b) {
+        return (a * attributes + b) * n + x;
+    }
+
+    private long row(int a, int x, int b) {
+        return cells[index(a, x, b)];
+    }
+
+    // keep only the bits of mask in row (a, x, b), mirroring every cleared cell into (b, a)
+    private boolean restrict(int a, int x, int b, long mask) {
+        long removed = row(a, x, b) & ~mask;
+        while (removed != 0) {
+            int y = Long.numberOfTrailingZeros(removed);
+            removed &= removed - 1;
+            if (!clear(a, x, b, y)) return false;
+        }
+        return true;
+    }
+
+    private boolean clear(int a, int x, int b, int y) {
+        if (a == b) return x != y;
+        cells[index(a, x, b)] &= ~(1L << y);
+        cells[index(b, y, a)] &= ~(1L << x);
+        return cells[index(a, x, b)] != 0 && cells[index(b, y, a)] != 0;
+    }
+
+    private boolean pair(int a, int x, int b, int y) {
+        if (a == b) return x == y;
+        for (int y2 = 0; y2 < n; y2++)
+            if (y2 != y && !clear(a, x, b, y2)) return false;
+        for (int x2 = 0; x2 < n; x2++)
+            if (x2 != x && !clear(a, x2, b, y)) return false;
+        return true;
+    }
+}
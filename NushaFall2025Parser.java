@@ -1,27 +1,132 @@
 import AST.*;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Parser that exposes the test-required entry:
  *   public Optional<Nusha> Nusha(LinkedList<Token> tokens) throws SyntaxErrorException
+ * and Nusha(TokenBuffer), which reads the lexer's buffer without building Token objects,
+ * and Nusha(Lexer), which pulls tokens from the lexer as it goes instead of lexing first.
+ * NushaWithDiagnostics reports every syntax error instead of throwing the first one.
  *
  * Implementation follows the same control flow and semantics you provided,
  * but uses slightly different helper names internally.
  */
 public class NushaFall2025Parser {
     private TokenManager tm;
+    private int depth;          // rule blocks open in the current item, for recover()
 
     // no-arg constructor (tests sometimes construct parser with no args)
     public NushaFall2025Parser() { }
 
     // entry required by tests (keeps the same name as in tests)
     public Optional<Nusha> Nusha(LinkedList<Token> tokens) throws SyntaxErrorException {
-        // initialize token stream manager
-        this.tm = new TokenManager(tokens);
+        return parse(new TokenManager(tokens));
+    }
+
+    // same, straight from Lexer.LexBuffer()
+    public Optional<Nusha> Nusha(TokenBuffer tokens) throws SyntaxErrorException {
+        return parse(new TokenManager(tokens));
+    }
+
+    // streaming: tokenization and parsing overlap and only a small token window is kept
+    public Optional<Nusha> Nusha(Lexer lexer) throws SyntaxErrorException {
+        return parse(new TokenManager(lexer));
+    }
+
+    // Every syntax error as a diagnostic instead of an exception. A failed item is reported and
+    // skipped up to the start of the next top-level item, and parsing goes on from there, so a
+    // rule that fails is reported rather than ending the program as Nusha does. The tree holds
+    // the items that parsed.
+    public ParseResult NushaWithDiagnostics(TokenBuffer tokens) {
+        return parseRecovering(new TokenManager(tokens));
+    }
+
+    public ParseResult NushaWithDiagnostics(LinkedList<Token> tokens) {
+        return parseRecovering(new TokenManager(tokens));
+    }
+
+    // A lexing error wins over any parse error, as it would if the whole input were lexed first
+    private Optional<Nusha> parse(TokenManager tokens) throws SyntaxErrorException {
+        this.tm = tokens;
+        Optional<Nusha> result;
+        try {
+            result = parseProgram();
+        } catch (SyntaxErrorException ex) {
+            tm.Finish();
+            throw ex;
+        }
+        tm.Finish();
+        return result;
+    }
+
+    private Optional<Nusha> parseProgram() throws SyntaxErrorException {
         if (tm.Done()) return Optional.empty();
 
-        // build root
+        Nusha root = newRoot();
+        parseItems(root);
+        return Optional.of(root);
+    }
+
+    // Parse tokens [from, to) of a buffer into a tree of its own (ParallelParser's ranges);
+    // null when a rule or anything else in the range fails to parse
+    Nusha parseRange(TokenBuffer tokens, int from, int to) {
+        this.tm = new TokenManager(tokens, from, to);
+        Nusha root = newRoot();
+        try {
+            return parseItems(root) ? root : null;
+        } catch (SyntaxErrorException ex) {
+            return null;
+        }
+    }
+
+    private ParseResult parseRecovering(TokenManager tokens) {
+        this.tm = tokens;
+        List<ParseResult.Diagnostic> diagnostics = new ArrayList<>();
+        if (tm.Done()) return new ParseResult(Optional.empty(), diagnostics);
+
+        Nusha root = newRoot();
+        while (!tm.Done()) {
+            skipBlankLines();
+            if (tm.Done()) break;
+            depth = 0;
+            try {
+                if (isDefinitionStart()) {
+                    root.definitions.definition.add(parseDefinition());
+                } else if (isVariableStart()) {
+                    parseVariable().ifPresent(root.variables.variable::add);
+                } else {
+                    root.rules.rule.add(parseRule());
+                }
+            } catch (SyntaxErrorException ex) {
+                diagnostics.add(new ParseResult.Diagnostic(ex.getMessage(), ex.getLineNumber(), ex.getCharPosition()));
+                recover();
+            }
+        }
+        return new ParseResult(Optional.of(root), diagnostics);
+    }
+
+    // Skip past the failing token to the next token that can start a top-level item: outside
+    // any rule block, right after a NEWLINE or DEDENT, and not layout itself
+    private void recover() {
+        boolean lineEnd;
+        do {
+            if (tm.PeekIs(0, Token.TokenTypes.INDENT)) depth++;
+            else if (tm.PeekIs(0, Token.TokenTypes.DEDENT)) depth--;
+            lineEnd = tm.PeekIs(0, Token.TokenTypes.NEWLINE) || tm.PeekIs(0, Token.TokenTypes.DEDENT);
+            tm.Skip();
+        } while (!tm.Done() && !(depth <= 0 && lineEnd && !isLayout()));
+    }
+
+    private boolean isLayout() {
+        return tm.PeekIs(0, Token.TokenTypes.NEWLINE)
+                || tm.PeekIs(0, Token.TokenTypes.INDENT)
+                || tm.PeekIs(0, Token.TokenTypes.DEDENT);
+    }
+
+    static Nusha newRoot() {
         Nusha root = new Nusha();
         root.definitions = new Definitions();
         root.variables = new Variables();
@@ -30,7 +135,12 @@ public class NushaFall2025Parser {
         root.definitions.definition = new LinkedList<>();
         root.variables.variable = new LinkedList<>();
         root.rules.rule = new LinkedList<>();
+        return root;
+    }
 
+    // definitions, variables and rules up to the end of the tokens; false when a rule failed
+    // and parsing stopped there
+    private boolean parseItems(Nusha root) throws SyntaxErrorException {
         // main loop: skip blank lines, then parse def / var / rule
         while (!tm.Done()) {
             skipBlankLines();
@@ -60,43 +170,37 @@ public class NushaFall2025Parser {
                 skipBlankLines();
             } catch (SyntaxErrorException ex) {
                 // stop parsing on clean failure (same behavior as your original)
-                break;
+                return false;
             }
         }
-
-        return Optional.of(root);
+        return true;
     }
 
     // ---------- small helpers ----------
     private void skipBlankLines() {
-        while (tm.MatchAndRemove(Token.TokenTypes.NEWLINE).isPresent()) { /* loop */ }
+        while (tm.Match(Token.TokenTypes.NEWLINE)) { /* loop */ }
     }
 
     private boolean isDefinitionStart() {
-        return tm.Peek(0).isPresent()
-                && tm.Peek(0).get().Type == Token.TokenTypes.IDENTIFIER
-                && tm.Peek(1).isPresent()
-                && tm.Peek(1).get().Type == Token.TokenTypes.EQUAL;
+        return tm.PeekIs(0, Token.TokenTypes.IDENTIFIER)
+                && tm.PeekIs(1, Token.TokenTypes.EQUAL);
     }
 
     private boolean isVariableStart() {
-        return tm.Peek(0).isPresent()
-                && tm.Peek(0).get().Type == Token.TokenTypes.VAR;
+        return tm.PeekIs(0, Token.TokenTypes.VAR);
     }
 
     // ---------- parsing building blocks ----------
     private Definition parseDefinition() throws SyntaxErrorException {
-        Token nameTok = require(Token.TokenTypes.IDENTIFIER);
+        String name = requireValue(Token.TokenTypes.IDENTIFIER);
         require(Token.TokenTypes.EQUAL);
 
         // choices: { id (, id)* }
-        if (tm.MatchAndRemove(Token.TokenTypes.LEFTCURLY).isPresent()) {
+        if (tm.Match(Token.TokenTypes.LEFTCURLY)) {
             LinkedList<String> choicesList = new LinkedList<>();
-            Token first = require(Token.TokenTypes.IDENTIFIER);
-            choicesList.add(first.Value.orElseThrow());
-            while (tm.MatchAndRemove(Token.TokenTypes.COMMA).isPresent()) {
-                Token nxt = require(Token.TokenTypes.IDENTIFIER);
-                choicesList.add(nxt.Value.orElseThrow());
+            choicesList.add(requireValue(Token.TokenTypes.IDENTIFIER));
+            while (tm.Match(Token.TokenTypes.COMMA)) {
+                choicesList.add(requireValue(Token.TokenTypes.IDENTIFIER));
             }
             require(Token.TokenTypes.RIGHTCURLY);
             requireNewLine();
@@ -105,17 +209,17 @@ public class NushaFall2025Parser {
             cs.choice = choicesList;
 
             Definition def = new Definition();
-            def.definitionName = nameTok.Value.orElseThrow();
+            def.definitionName = name;
             def.choices = Optional.of(cs);
             def.nstruct = Optional.empty();
             return def;
         }
 
         // nstruct: [ entry (, entry)* ]
-        if (tm.MatchAndRemove(Token.TokenTypes.LEFTBRACE).isPresent()) {
+        if (tm.Match(Token.TokenTypes.LEFTBRACE)) {
             LinkedList<Entry> entries = new LinkedList<>();
             entries.add(parseEntry());
-            while (tm.MatchAndRemove(Token.TokenTypes.COMMA).isPresent()) {
+            while (tm.Match(Token.TokenTypes.COMMA)) {
                 entries.add(parseEntry());
             }
             require(Token.TokenTypes.RIGHTBRACE);
@@ -125,48 +229,46 @@ public class NushaFall2025Parser {
             ns.entry = entries;
 
             Definition def = new Definition();
-            def.definitionName = nameTok.Value.orElseThrow();
+            def.definitionName = name;
             def.choices = Optional.empty();
             def.nstruct = Optional.of(ns);
             return def;
         }
 
         // neither choices nor nstruct -> syntax error
-        throw new SyntaxErrorException("Expected '{' or '[' in definition",
-                tm.getCurrentLine(), tm.getCurrentColumnNumber());
+        throw error("Expected '{' or '[' in definition");
     }
 
     private Entry parseEntry() throws SyntaxErrorException {
-        boolean unique = tm.MatchAndRemove(Token.TokenTypes.UNIQUE).isPresent();
-        Token typeTok = require(Token.TokenTypes.IDENTIFIER);
-        Token nameTok = require(Token.TokenTypes.IDENTIFIER);
+        boolean unique = tm.Match(Token.TokenTypes.UNIQUE);
+        String typeName = requireValue(Token.TokenTypes.IDENTIFIER);
+        String name = requireValue(Token.TokenTypes.IDENTIFIER);
 
         Entry e = new Entry();
         e.unique = unique;
-        e.type = typeTok.Value.orElseThrow();
-        e.name = nameTok.Value.orElseThrow();
+        e.type = typeName;
+        e.name = name;
         return e;
     }
 
     private Optional<Variable> parseVariable() throws SyntaxErrorException {
-        if (tm.MatchAndRemove(Token.TokenTypes.VAR).isEmpty()) return Optional.empty();
+        if (!tm.Match(Token.TokenTypes.VAR)) return Optional.empty();
 
-        Token name = require(Token.TokenTypes.IDENTIFIER);
+        String name = requireValue(Token.TokenTypes.IDENTIFIER);
         require(Token.TokenTypes.COLON);
-        Token type = require(Token.TokenTypes.IDENTIFIER);
+        String type = requireValue(Token.TokenTypes.IDENTIFIER);
 
         Optional<String> size = Optional.empty();
-        if (tm.MatchAndRemove(Token.TokenTypes.LEFTBRACE).isPresent()) {
-            Token num = require(Token.TokenTypes.NUMBER);
-            size = Optional.of(num.Value.orElseThrow());
+        if (tm.Match(Token.TokenTypes.LEFTBRACE)) {
+            size = Optional.of(requireValue(Token.TokenTypes.NUMBER));
             require(Token.TokenTypes.RIGHTBRACE);
         }
 
         requireNewLine();
 
         Variable v = new Variable();
-        v.variableName = name.Value.orElseThrow();
-        v.type = type.Value.orElseThrow();
+        v.variableName = name;
+        v.type = type;
         v.size = size;
         return Optional.of(v);
     }
@@ -175,7 +277,7 @@ public class NushaFall2025Parser {
         Expression head = parseExpression();
 
         // no yields -> single-line rule
-        if (tm.MatchAndRemove(Token.TokenTypes.YIELDS).isEmpty()) {
+        if (!tm.Match(Token.TokenTypes.YIELDS)) {
             requireNewLine();
             Rule r = new Rule();
             r.expression = head;
@@ -186,11 +288,12 @@ public class NushaFall2025Parser {
         // yields -> indented block of then-expressions
         requireNewLine();
         require(Token.TokenTypes.INDENT);
+        depth++;
 
         LinkedList<Expression> thens = new LinkedList<>();
         while (true) {
             skipBlankLines();
-            if (tm.Peek(0).isPresent() && tm.Peek(0).get().Type == Token.TokenTypes.DEDENT) break;
+            if (tm.PeekIs(0, Token.TokenTypes.DEDENT)) break;
 
             Expression e = parseExpression();
             thens.add(e);
@@ -198,6 +301,7 @@ public class NushaFall2025Parser {
         }
 
         require(Token.TokenTypes.DEDENT);
+        depth--;
 
         Rule rr = new Rule();
         rr.expression = head;
@@ -208,17 +312,15 @@ public class NushaFall2025Parser {
     private Expression parseExpression() throws SyntaxErrorException {
         VariableReference left = parseVariableReference();
 
-        Optional<Token> opTok = tm.MatchAndRemove(Token.TokenTypes.EQUAL);
-        if (opTok.isEmpty()) opTok = tm.MatchAndRemove(Token.TokenTypes.NOTEQUAL);
-        if (opTok.isEmpty()) {
-            throw new SyntaxErrorException("Expected operator",
-                    tm.getCurrentLine(), tm.getCurrentColumnNumber());
+        boolean equal = tm.Match(Token.TokenTypes.EQUAL);
+        if (!equal && !tm.Match(Token.TokenTypes.NOTEQUAL)) {
+            throw error("Expected operator");
         }
 
         VariableReference right = parseVariableReference();
 
         Op op = new Op();
-        op.type = (opTok.get().Type == Token.TokenTypes.EQUAL)
+        op.type = equal
                 ? Op.OpTypes.Equal
                 : Op.OpTypes.NotEqual;
 
@@ -230,29 +332,28 @@ public class NushaFall2025Parser {
     }
 
     private VariableReference parseVariableReference() throws SyntaxErrorException {
-        Token name = require(Token.TokenTypes.IDENTIFIER);
+        String name = requireValue(Token.TokenTypes.IDENTIFIER);
         VariableReference vr = new VariableReference();
-        vr.variableName = name.Value.orElseThrow();
+        vr.variableName = name;
         vr.vrmodifier = parseVRModifierChain();
         return vr;
     }
 
     private Optional<VRModifier> parseVRModifierChain() throws SyntaxErrorException {
-        if (!tm.Peek(0).isPresent()) return Optional.empty();
-        Token t = tm.Peek(0).get();
-        if (t.Type != Token.TokenTypes.LEFTBRACE && t.Type != Token.TokenTypes.DOT) return Optional.empty();
+        if (!tm.PeekIs(0, Token.TokenTypes.LEFTBRACE) && !tm.PeekIs(0, Token.TokenTypes.DOT))
+            return Optional.empty();
 
         VRModifier m = new VRModifier();
-        if (tm.MatchAndRemove(Token.TokenTypes.LEFTBRACE).isPresent()) {
-            Token num = require(Token.TokenTypes.NUMBER);
+        if (tm.Match(Token.TokenTypes.LEFTBRACE)) {
+            String num = requireValue(Token.TokenTypes.NUMBER);
             m.dot = false;
-            m.size = num.Value.orElseThrow();
+            m.size = num;
             m.part = Optional.empty();
             require(Token.TokenTypes.RIGHTBRACE);
-        } else if (tm.MatchAndRemove(Token.TokenTypes.DOT).isPresent()) {
-            Token partTok = require(Token.TokenTypes.IDENTIFIER);
+        } else if (tm.Match(Token.TokenTypes.DOT)) {
+            String part = requireValue(Token.TokenTypes.IDENTIFIER);
             m.dot = true;
-            m.part = Optional.of(partTok.Value.orElseThrow());
+            m.part = Optional.of(part);
             m.size = null;
         } else {
             return Optional.empty();
@@ -261,28 +362,32 @@ public class NushaFall2025Parser {
         return Optional.of(m);
     }
 
+    // a syntax error at the current token; stackless, since a failed rule is normal control flow
+    private SyntaxErrorException error(String message) {
+        return new SyntaxErrorException(message, tm.getCurrentLine(), tm.getCurrentColumnNumber(), false);
+    }
+
     // require a token of a given type or throw SyntaxErrorException
-    private Token require(Token.TokenTypes required) throws SyntaxErrorException {
-        Optional<Token> tok = tm.MatchAndRemove(required);
-        if (tok.isEmpty()) {
-            throw new SyntaxErrorException(
-                    "Expected " + required,
-                    tm.getCurrentLine(),
-                    tm.getCurrentColumnNumber()
-            );
+    private void require(Token.TokenTypes required) throws SyntaxErrorException {
+        if (!tm.Match(required)) {
+            throw error("Expected " + required);
+        }
+    }
+
+    // same, for a token with a value (IDENTIFIER, NUMBER); returns the value
+    private String requireValue(Token.TokenTypes required) throws SyntaxErrorException {
+        String value = tm.MatchValue(required);
+        if (value == null) {
+            throw error("Expected " + required);
         }
-        return tok.get();
+        return value;
     }
 
     private void requireNewLine() throws SyntaxErrorException {
-        if (!tm.MatchAndRemove(Token.TokenTypes.NEWLINE).isPresent()) {
-            throw new SyntaxErrorException(
-                    "Expected NEWLINE",
-                    tm.getCurrentLine(),
-                    tm.getCurrentColumnNumber()
-            );
+        if (!tm.Match(Token.TokenTypes.NEWLINE)) {
+            throw error("Expected NEWLINE");
         }
         // swallow extra NEWLINE tokens
-        while (tm.MatchAndRemove(Token.TokenTypes.NEWLINE).isPresent()) {}
+        while (tm.Match(Token.TokenTypes.NEWLINE)) {}
     }
 }
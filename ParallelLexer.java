@@ -0,0 +1,110 @@
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Lexes a large source in chunks on a ForkJoinPool, with the same tokens as Lexer.LexBuffer.
+ *
+ * Chunks end right before a line that starts at column 0 with something other than blank
+ * space. The sequential lexer is at indent 0 there, with every block closed, so a chunk can
+ * start with a fresh Lexer. A chunk's lexer closes its open blocks at its end with the same
+ * DEDENTs, on the same line, that the sequential lexer emits at the next chunk's first line.
+ * The NEWLINE a lexer adds at the end of its input is dropped for every chunk but the last.
+ * Line numbers then move by the lines of the chunks before, slices by the chunk's offset,
+ * and each chunk's symbol ids are re-interned in chunk order, which gives the ids the
+ * sequential lexer would have given.
+ *
+ * Any lexing error re-lexes the input sequentially, so the exception is the sequential one.
+ */
+public final class ParallelLexer {
+    public static final int DEFAULT_CHUNK = 1 << 20;
+
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public ParallelLexer() {
+        this(DEFAULT_CHUNK, ForkJoinPool.commonPool());
+    }
+
+    // chunkSize: characters per chunk before the next boundary; inputs shorter than that are
+    // lexed on the calling thread
+    public ParallelLexer(int chunkSize, ForkJoinPool pool) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pool = pool;
+    }
+
+    public TokenBuffer lex(CharSequence source) throws SyntaxErrorException {
+        return lex(source, new SymbolTable());
+    }
+
+    public TokenBuffer lex(CharSequence source, SymbolTable symbols) throws SyntaxErrorException {
+        List<Integer> starts = boundaries(source, chunkSize);
+        if (starts.size() == 1) return new Lexer(new TextManager(source), symbols).LexBuffer();
+
+        List<Callable<Lexer>> tasks = new ArrayList<>();
+        List<TokenBuffer> chunks = new ArrayList<>();
+        for (int k = 0; k < starts.size(); k++) {
+            int start = starts.get(k);
+            int end = (k + 1 < starts.size()) ? starts.get(k + 1) : source.length();
+            Lexer lexer = new Lexer(new TextManager(CharBuffer.wrap(source, start, end)));
+            TokenBuffer chunk = lexer.newBuffer((end - start) / 4);
+            chunks.add(chunk);
+            tasks.add(() -> {
+                while (lexer.LexMore(chunk)) { /* drain */ }
+                return lexer;
+            });
+        }
+
+        List<Lexer> lexers = new ArrayList<>();
+        try {
+            for (Future<Lexer> f : pool.invokeAll(tasks)) lexers.add(f.get());
+        } catch (ExecutionException ex) {
+            return new Lexer(new TextManager(source), symbols).LexBuffer();   // throws the error
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new Lexer(new TextManager(source), symbols).LexBuffer();
+        }
+
+        TokenBuffer all = new TokenBuffer(source, symbols, source.length() / 4);
+        int lineOffset = 0;
+        for (int k = 0; k < chunks.size(); k++) {
+            TokenBuffer chunk = chunks.get(k);
+            SymbolTable local = lexers.get(k).getSymbols();
+            int[] remap = new int[local.size()];
+            for (int id = 0; id < remap.length; id++) remap[id] = symbols.intern(local.name(id));
+
+            boolean last = k == chunks.size() - 1;
+            int n = last ? chunk.size() : chunk.size() - 1;
+            all.append(chunk, n, starts.get(k), lineOffset, remap);
+            // the dropped NEWLINE sits on the line after the chunk's last '\n'
+            lineOffset += chunk.line(chunk.size() - 1) - 1;
+        }
+        return all;
+    }
+
+    // chunk start offsets: 0, then the first safe line start at or after each chunkSize step
+    static List<Integer> boundaries(CharSequence source, int chunkSize) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        int n = source.length();
+        int i = chunkSize;
+        while (i < n) {
+            // the next line that starts with a token at column 0
+            while (i < n && !isBoundary(source, i)) i++;
+            if (i >= n) break;
+            starts.add(i);
+            i += chunkSize;
+        }
+        return starts;
+    }
+
+    // true when i (0 < i < length) starts a line with something other than blank space
+    static boolean isBoundary(CharSequence source, int i) {
+        char c = source.charAt(i);
+        return source.charAt(i - 1) == '\n' && c != ' ' && c != '\t' && c != '\r' && c != '\n';
+    }
+}
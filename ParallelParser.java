@@ -0,0 +1,104 @@
+import AST.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the top-level items of a lexed program in parallel, for programs with a very large
+ * number of generated rules.
+ *
+ * A pre-scan over the token types marks where items start: at indent depth 0, right after a
+ * NEWLINE or DEDENT, on a token that is not layout. Runs of items of about chunkTokens tokens
+ * are parsed on a ForkJoinPool, each by its own NushaFall2025Parser, and the definitions,
+ * variables and rules are appended in source order.
+ *
+ * An item never runs past such a boundary when it parses, so clean ranges give the sequential
+ * tree. When any range fails (a rule the sequential parser would stop at, or a syntax error in
+ * a definition or variable) the whole program is parsed sequentially instead, which keeps the
+ * truncation and the first error exactly as they are.
+ */
+public final class ParallelParser {
+    public static final int DEFAULT_CHUNK = 1 << 16;
+
+    private final int chunkTokens;
+    private final ForkJoinPool pool;
+
+    public ParallelParser() {
+        this(DEFAULT_CHUNK, ForkJoinPool.commonPool());
+    }
+
+    public ParallelParser(int chunkTokens, ForkJoinPool pool) {
+        this.chunkTokens = Math.max(1, chunkTokens);
+        this.pool = pool;
+    }
+
+    public Optional<Nusha> parse(TokenBuffer tokens) throws SyntaxErrorException {
+        List<Integer> starts = ranges(tokens, chunkTokens);
+        if (starts.size() <= 1) return new NushaFall2025Parser().Nusha(tokens);
+
+        List<Callable<Nusha>> tasks = new ArrayList<>();
+        for (int k = 0; k < starts.size(); k++) {
+            int from = starts.get(k);
+            int to = (k + 1 < starts.size()) ? starts.get(k + 1) : tokens.size();
+            tasks.add(() -> new NushaFall2025Parser().parseRange(tokens, from, to));
+        }
+
+        List<Nusha> parts = new ArrayList<>();
+        try {
+            for (Future<Nusha> f : pool.invokeAll(tasks)) {
+                Nusha part = f.get();
+                if (part == null) return new NushaFall2025Parser().Nusha(tokens);
+                parts.add(part);
+            }
+        } catch (ExecutionException ex) {
+            return new NushaFall2025Parser().Nusha(tokens);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new NushaFall2025Parser().Nusha(tokens);
+        }
+        return Optional.of(merge(parts));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Nusha merge(List<Nusha> parts) {
+        Nusha root = NushaFall2025Parser.newRoot();
+        for (Nusha part : parts) {
+            root.definitions.definition.addAll(part.definitions.definition);
+            root.variables.variable.addAll(part.variables.variable);
+            root.rules.rule.addAll(part.rules.rule);
+        }
+        return root;
+    }
+
+    // token indices where ranges start: 0, then the first item start at or after each
+    // chunkTokens step
+    static List<Integer> ranges(TokenBuffer tokens, int chunkTokens) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        int depth = 0;
+        int next = chunkTokens;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i >= next && depth == 0 && isItemStart(tokens, i)) {
+                starts.add(i);
+                next = i + chunkTokens;
+            }
+            if (tokens.is(i, Token.TokenTypes.INDENT)) depth++;
+            else if (tokens.is(i, Token.TokenTypes.DEDENT)) depth--;
+        }
+        return starts;
+    }
+
+    static boolean isItemStart(TokenBuffer tokens, int i) {
+        if (i == 0) return false;
+        boolean afterLine = tokens.is(i - 1, Token.TokenTypes.NEWLINE) || tokens.is(i - 1, Token.TokenTypes.DEDENT);
+        return afterLine
+                && !tokens.is(i, Token.TokenTypes.NEWLINE)
+                && !tokens.is(i, Token.TokenTypes.INDENT)
+                && !tokens.is(i, Token.TokenTypes.DEDENT);
+    }
+}
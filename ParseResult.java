@@ -0,0 +1,50 @@
+import AST.Nusha;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * What NushaFall2025Parser.NushaWithDiagnostics found: the tree of the items that parsed, empty
+ * for a program without tokens, and one diagnostic per item that did not, in source order.
+ */
+public final class ParseResult {
+
+    // one syntax error, where the parser was when the item failed
+    public static final class Diagnostic {
+        public final String message;
+        public final int line;
+        public final int column;
+
+        Diagnostic(String message, int line, int column) {
+            this.message = message;
+            this.line = line;
+            this.column = column;
+        }
+
+        @Override
+        public String toString() {
+            return "Error at line " + line + " at character " + column + " : " + message;
+        }
+    }
+
+    private final Optional<Nusha> tree;
+    private final List<Diagnostic> diagnostics;
+
+    ParseResult(Optional<Nusha> tree, List<Diagnostic> diagnostics) {
+        this.tree = tree;
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+    }
+
+    public Optional<Nusha> tree() {
+        return tree;
+    }
+
+    public List<Diagnostic> diagnostics() {
+        return diagnostics;
+    }
+
+    public boolean hasErrors() {
+        return !diagnostics.isEmpty();
+    }
+}
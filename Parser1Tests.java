@@ -1,3 +1,4 @@
+import AST.Token;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -28,4 +29,142 @@ public class Parser1Tests {
         Assertions.assertEquals("Songs", ast.variables.variable.get(1).variableName);
         Assertions.assertEquals("5", ast.variables.variable.get(1).size.orElseThrow());
     }
+
+    @Test
+    public void diagnosticsTest() throws Exception {
+        var code =  "A = {a1, a2\n"+
+                "var As : A[2]\n"+
+                "As[0] = a1 =>\n"+
+                "    As[1] a2\n"+
+                "    As[1] = a2\n"+
+                "As[1] != a1\n"+
+                "var Bs B\n"+
+                "";
+        var result = new NushaFall2025Parser().NushaWithDiagnostics(new Lexer(code).LexBuffer());
+        var ast = result.tree().orElseThrow();
+        Assertions.assertEquals(3, result.diagnostics().size());
+        Assertions.assertEquals("Expected RIGHTCURLY", result.diagnostics().get(0).message);
+        Assertions.assertEquals(1, result.diagnostics().get(0).line);
+        Assertions.assertEquals("Expected operator", result.diagnostics().get(1).message);
+        Assertions.assertEquals(4, result.diagnostics().get(1).line);
+        Assertions.assertEquals("Expected COLON", result.diagnostics().get(2).message);
+        Assertions.assertEquals(0, ast.definitions.definition.size());
+        Assertions.assertEquals("As", ast.variables.variable.get(0).variableName);
+        Assertions.assertEquals(1, ast.rules.rule.size());
+        Assertions.assertEquals("NotEqual", ast.rules.rule.get(0).expression.op.type.name());
+    }
+
+    @Test
+    public void tokenManagerBufferTest() throws Exception {
+        var buffer = new Lexer("var As : A[2]\n").LexBuffer();
+        var tokens = new TokenManager(buffer);
+        Assertions.assertTrue(tokens.PeekIs(0, Token.TokenTypes.VAR));
+        Assertions.assertTrue(tokens.PeekIs(5, Token.TokenTypes.NUMBER));
+        Assertions.assertFalse(tokens.PeekIs(5, Token.TokenTypes.IDENTIFIER));
+        Assertions.assertFalse(tokens.PeekIs(buffer.size(), Token.TokenTypes.NEWLINE));
+        Assertions.assertEquals("2", tokens.Peek(5).orElseThrow().Value.orElseThrow());
+        Assertions.assertFalse(tokens.Match(Token.TokenTypes.COLON));
+        Assertions.assertTrue(tokens.Match(Token.TokenTypes.VAR));
+        int name = tokens.MatchIndex(Token.TokenTypes.IDENTIFIER);
+        Assertions.assertEquals("As", tokens.buffer().value(name));
+        Assertions.assertEquals(-1, tokens.MatchIndex(Token.TokenTypes.IDENTIFIER));
+        Assertions.assertEquals(1, tokens.getCurrentLine());
+        Assertions.assertTrue(tokens.Match(Token.TokenTypes.COLON));
+        Assertions.assertEquals("A", tokens.MatchValue(Token.TokenTypes.IDENTIFIER));
+        for (int i = 0; i < 5; i++) Assertions.assertTrue(tokens.Skip());   // [2] and two NEWLINEs
+        Assertions.assertFalse(tokens.Skip());
+        Assertions.assertTrue(tokens.Done());
+        Assertions.assertTrue(tokens.Peek().isEmpty());
+        Assertions.assertEquals(-1, tokens.getCurrentLine());
+    }
+
+    @Test
+    public void tokenIdentityTest() throws Exception {
+        var code = new StringBuilder("A = {a1, a2}\nvar As : A[2]\n");
+        for (int i = 0; i < 40; i++) code.append("As[0] != As[1]\n");
+        var buffer = new Lexer(code.toString()).LexBuffer();
+        Assertions.assertEquals(Token.TokenTypes.IDENTIFIER, buffer.type(0));
+        Assertions.assertEquals("A", buffer.value(0));
+        Assertions.assertFalse(buffer.hasValue(1));
+        Assertions.assertEquals(1, buffer.line(2));
+        Assertions.assertEquals(5, buffer.column(2));
+
+        // every source hands out one Token per position, whichever way it is asked for
+        var list = new Lexer(code.toString()).Lex();
+        var fromList = new TokenManager(list);
+        Assertions.assertSame(list.get(0), fromList.Peek(0).orElseThrow());
+        var managers = new TokenManager[] { new TokenManager(buffer), new TokenManager(new Lexer(code.toString())) };
+        for (var tokens : managers) {
+            int n = 0;
+            while (!tokens.Done()) {
+                Token ahead = tokens.Peek(1).orElse(null);
+                Token next = tokens.Peek(0).orElseThrow();
+                Assertions.assertSame(next, tokens.MatchAndRemove(next.Type).orElseThrow());
+                if (ahead != null) Assertions.assertSame(ahead, tokens.Peek(0).orElseThrow());
+                Assertions.assertEquals(buffer.type(n), next.Type);
+                Assertions.assertEquals(buffer.line(n), next.LineNumber);
+                n++;
+            }
+            Assertions.assertEquals(buffer.size(), n);
+        }
+    }
+
+    @Test
+    public void streamingParseTest() throws Exception {
+        var code = new StringBuilder("A = {a1, a2}\nS = [unique A a, A b]\nvar Ss : S[2]\n");
+        for (int i = 0; i < 50; i++)
+            code.append("Ss.a = a1 =>\n    Ss.b != a").append(1 + i % 2).append("\nSs[0].b = Ss[1].a\n");
+        var streamed = new NushaFall2025Parser().Nusha(new Lexer(code.toString())).orElseThrow();
+        var buffered = new NushaFall2025Parser().Nusha(new Lexer(code.toString()).LexBuffer()).orElseThrow();
+        Assertions.assertEquals(100, streamed.rules.rule.size());
+        Assertions.assertEquals(describe(buffered), describe(streamed));
+
+        // a lexing error far into the input stops the stream with the same error
+        code.append("Ss[0].a = $\n");
+        var fromBuffer = Assertions.assertThrows(SyntaxErrorException.class,
+                () -> new NushaFall2025Parser().Nusha(new Lexer(code.toString()).LexBuffer()));
+        var fromStream = Assertions.assertThrows(SyntaxErrorException.class,
+                () -> new NushaFall2025Parser().Nusha(new Lexer(code.toString())));
+        Assertions.assertEquals(fromBuffer.getMessage(), fromStream.getMessage());
+    }
+
+    // the parts of a tree the tests compare, one item per line
+    private static String describe(AST.Nusha ast) {
+        var sb = new StringBuilder();
+        for (var d : ast.definitions.definition)
+            sb.append(d.definitionName).append(d.choices.isPresent() ? " choices" : " struct").append('\n');
+        for (var v : ast.variables.variable)
+            sb.append(v.variableName).append(' ').append(v.type).append(' ').append(v.size.orElse("")).append('\n');
+        for (var r : ast.rules.rule) {
+            sb.append(r.expression.left.variableName).append(' ').append(r.expression.op.type)
+                    .append(' ').append(r.expression.right.variableName);
+            for (var t : r.thens)
+                sb.append(" => ").append(t.left.variableName).append(' ').append(t.op.type)
+                        .append(' ').append(t.right.variableName);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void incrementalEditTest() throws Exception {
+        var code =  "A = {a1, a2}\n"+
+                "var As : A[2]\n"+
+                "As[0] = a1 =>\n"+
+                "    As[1] = a2\n"+
+                "As[1] != a1\n"+
+                "";
+        var parser = new IncrementalParser();
+        var before = parser.parse(code);
+        int offset = code.indexOf("a2\nAs[1]");
+        var after = parser.edit(before, offset, 2, "a1\n    As[0] != a2");
+        var ast = after.tree.orElseThrow();
+        var full = new NushaFall2025Parser().Nusha(new Lexer(after.source.toString()).Lex()).orElseThrow();
+        Assertions.assertEquals(full.rules.rule.size(), ast.rules.rule.size());
+        Assertions.assertEquals(2, ast.rules.rule.get(0).thens.size());
+        Assertions.assertEquals("a2", ast.rules.rule.get(0).thens.get(1).right.variableName);
+        Assertions.assertSame(before.tree.orElseThrow().definitions.definition.get(0), ast.definitions.definition.get(0));
+        Assertions.assertSame(before.tree.orElseThrow().rules.rule.get(1), ast.rules.rule.get(1));
+        Assertions.assertEquals(7, after.tokens.line(after.tokens.size() - 1));
+    }
 }
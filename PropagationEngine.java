@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs propagators to a fixpoint over a DomainStore.
+ *
+ * There is one FIFO queue per priority and the cheapest non-empty queue is always served
+ * first, so binary rules settle before implications, and implications before all-different
+ * constraints. A propagator is only queued when a variable it watches changes, and an
+ * idempotent propagator is not re-queued by its own changes.
+ */
+public class PropagationEngine {
+    private final DomainStore store;
+    private final List<Propagator> propagators = new ArrayList<>();
+
+    // indices into propagators; kept here rather than on the propagators, so one propagator
+    // can serve several engines
+    private int[][] watchers;         // variable id -> propagator indices
+    private boolean[] queued;
+
+    // one ring buffer per priority
+    private int[][] queues;
+    private final int[] head = new int[Propagator.PRIORITY_COUNT];
+    private final int[] count = new int[Propagator.PRIORITY_COUNT];
+
+    private long propagations = 0;
+
+    // the propagator that failed in the last unsuccessful propagate()
+    private Propagator lastFailure = null;
+
+    public PropagationEngine(DomainStore store) {
+        this.store = store;
+    }
+
+    public DomainStore store() {
+        return store;
+    }
+
+    public void add(Propagator p) {
+        propagators.add(p);
+        watchers = null;
+    }
+
+    public List<Propagator> propagators() {
+        return propagators;
+    }
+
+    public long propagations() {
+        return propagations;
+    }
+
+    public Propagator lastFailure() {
+        return lastFailure;
+    }
+
+    // Build watch lists and queues; called lazily once all propagators are added
+    private void prepare() {
+        int n = store.variableCount();
+        int[] sizes = new int[n];
+        for (Propagator p : propagators)
+            for (int v : p.vars) sizes[v]++;
+
+        watchers = new int[n][];
+        for (int v = 0; v < n; v++) watchers[v] = new int[sizes[v]];
+        int[] fill = new int[n];
+        for (int k = 0; k < propagators.size(); k++)
+            for (int v : propagators.get(k).vars) watchers[v][fill[v]++] = k;
+
+        queued = new boolean[propagators.size()];
+        queues = new int[Propagator.PRIORITY_COUNT][propagators.size() + 1];
+    }
+
+    // Queue every propagator, e.g. before the first propagation at the root
+    public void scheduleAll() {
+        if (watchers == null) prepare();
+        for (int k = 0; k < propagators.size(); k++) enqueue(k);
+    }
+
+    // Propagate to a fixpoint; false on failure (the caller restores the store)
+    public boolean propagate() {
+        if (watchers == null) prepare();
+        wakeWatchers(null);
+
+        int k;
+        while ((k = dequeue()) >= 0) {
+            Propagator p = propagators.get(k);
+            propagations++;
+            if (!p.propagate(store)) {
+                lastFailure = p;
+                clearQueues();
+                store.clearChanged();
+                return false;
+            }
+            wakeWatchers(p);
+        }
+        return true;
+    }
+
+    // schedule the watchers of every changed variable
+    private void wakeWatchers(Propagator current) {
+        int var;
+        while ((var = store.pollChanged()) >= 0) {
+            for (int k : watchers[var]) {
+                Propagator w = propagators.get(k);
+                if (w == current && w.idempotent) continue;
+                enqueue(k);
+            }
+        }
+    }
+
+    private void enqueue(int k) {
+        if (queued[k]) return;
+        queued[k] = true;
+        int pr = propagators.get(k).priority;
+        int[] q = queues[pr];
+        q[(head[pr] + count[pr]) % q.length] = k;
+        count[pr]++;
+    }
+
+    // index of the next propagator to run, -1 when every queue is empty
+    private int dequeue() {
+        for (int pr = 0; pr < Propagator.PRIORITY_COUNT; pr++) {
+            if (count[pr] == 0) continue;
+            int[] q = queues[pr];
+            int k = q[head[pr]];
+            head[pr] = (head[pr] + 1) % q.length;
+            count[pr]--;
+            queued[k] = false;
+            return k;
+        }
+        return -1;
+    }
+
+    private void clearQueues() {
+        Arrays.fill(count, 0);
+        Arrays.fill(queued, false);
+    }
+}
@@ -0,0 +1,150 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PropagationTests {
+
+    // nested checkpoints undo what changed after them; changes before the first checkpoint stay
+    @Test
+    public void restoreUndoesToCheckpoint() {
+        DomainStore s = new DomainStore(new int[] { 4, 70, 3 });
+        Assertions.assertTrue(s.remove(2, 0));
+        int outer = s.checkpoint();
+        Assertions.assertTrue(s.remove(0, 1));
+        Assertions.assertTrue(s.assign(1, 65));
+        int inner = s.checkpoint();
+        Assertions.assertTrue(s.assign(0, 3));
+        Assertions.assertTrue(s.remove(2, 1));
+        Assertions.assertEquals(2, s.value(2));
+        Assertions.assertFalse(s.remove(2, 2));
+
+        s.restore(inner);
+        Assertions.assertEquals(3, s.size(0));
+        Assertions.assertFalse(s.contains(0, 1));
+        Assertions.assertEquals(65, s.value(1));
+        Assertions.assertEquals(2, s.size(2));
+
+        s.restore(outer);
+        Assertions.assertEquals(4, s.size(0));
+        Assertions.assertEquals(70, s.size(1));
+        Assertions.assertEquals(-1, s.value(1));
+        Assertions.assertEquals(2, s.size(2));
+        Assertions.assertFalse(s.contains(2, 0));
+    }
+
+    // a change at one end of a chain of equalities reaches the other end, and after a failure
+    // the engine propagates the next change normally
+    @Test
+    public void propagationReachesFixpoint() {
+        DomainStore s = new DomainStore(new int[] { 3, 3, 3, 3 });
+        PropagationEngine engine = new PropagationEngine(s);
+        for (int v = 0; v < 3; v++) engine.add(new BinaryPropagator(Literal.vars(v, false, v + 1)));
+        engine.scheduleAll();
+        Assertions.assertTrue(engine.propagate());
+        Assertions.assertEquals(3, s.size(0));
+
+        int level = s.checkpoint();
+        Assertions.assertTrue(s.remove(3, 0));
+        Assertions.assertTrue(s.remove(3, 1));
+        Assertions.assertTrue(engine.propagate());
+        for (int v = 0; v < 4; v++) Assertions.assertEquals(2, s.value(v));
+        s.restore(level);
+
+        level = s.checkpoint();
+        Assertions.assertTrue(s.remove(0, 2));
+        Assertions.assertTrue(s.remove(3, 0));
+        Assertions.assertTrue(s.remove(3, 1));
+        Assertions.assertFalse(engine.propagate());
+        Assertions.assertNotNull(engine.lastFailure());
+        s.restore(level);
+
+        Assertions.assertTrue(s.remove(1, 0));
+        Assertions.assertTrue(engine.propagate());
+        for (int v = 0; v < 4; v++) {
+            Assertions.assertEquals(2, s.size(v));
+            Assertions.assertFalse(s.contains(v, 0));
+        }
+    }
+
+    // a value leaving primal[i] removes i from its dual variable and the other way round
+    @Test
+    public void channelKeepsBothSidesInStep() {
+        DomainStore s = new DomainStore(new int[] { 3, 3, 3, 3, 3, 3 });
+        PropagationEngine engine = new PropagationEngine(s);
+        engine.add(new ChannelPropagator(new int[] { 0, 1, 2 }, new int[] { 3, 4, 5 }));
+        engine.scheduleAll();
+        Assertions.assertTrue(engine.propagate());
+
+        Assertions.assertTrue(s.remove(0, 1));
+        Assertions.assertTrue(engine.propagate());
+        Assertions.assertFalse(s.contains(4, 0));
+
+        Assertions.assertTrue(s.assign(5, 1));
+        Assertions.assertTrue(engine.propagate());
+        Assertions.assertFalse(s.contains(0, 2));
+        Assertions.assertFalse(s.contains(2, 2));
+        Assertions.assertEquals(0, s.value(0));
+
+        Assertions.assertTrue(s.remove(3, 0));
+        Assertions.assertFalse(engine.propagate());
+    }
+
+    // one propagator in two engines, at different indices, as LNS shares them across rounds
+    @Test
+    public void propagatorServesSeveralEngines() {
+        Propagator equal = new BinaryPropagator(Literal.vars(0, false, 1));
+        Propagator notZero = new BinaryPropagator(Literal.constant(1, true, 0));
+
+        DomainStore first = new DomainStore(new int[] { 2, 2 });
+        PropagationEngine a = new PropagationEngine(first);
+        a.add(equal);
+        a.add(new BinaryPropagator(Literal.constant(0, true, 1)));
+        a.add(notZero);
+        a.scheduleAll();
+        Assertions.assertFalse(a.propagate());
+
+        DomainStore second = new DomainStore(new int[] { 3, 3 });
+        PropagationEngine b = new PropagationEngine(second);
+        b.add(notZero);
+        b.add(equal);
+        b.scheduleAll();
+        Assertions.assertTrue(b.propagate());
+        Assertions.assertFalse(second.contains(0, 0));
+        Assertions.assertTrue(second.remove(1, 2));
+        Assertions.assertTrue(b.propagate());
+        Assertions.assertEquals(1, second.value(0));
+    }
+
+    // the largest id of a class is its root
+    @Test
+    public void unionFindKeepsLargestRoot() {
+        UnionFind uf = new UnionFind(6);
+        Assertions.assertTrue(uf.union(0, 3));
+        Assertions.assertTrue(uf.union(4, 1));
+        Assertions.assertTrue(uf.union(1, 3));
+        Assertions.assertFalse(uf.union(0, 4));
+        for (int x : new int[] { 0, 1, 3, 4 }) Assertions.assertEquals(4, uf.find(x));
+        Assertions.assertEquals(2, uf.find(2));
+        Assertions.assertTrue(uf.isRepresentative(4));
+        Assertions.assertFalse(uf.isRepresentative(3));
+        Assertions.assertTrue(uf.isRepresentative(5));
+    }
+
+    // every branch is undone on the way back, so the search ends on the root domains
+    @Test
+    public void searchLeavesRootDomains() {
+        DomainStore s = new DomainStore(new int[] { 3, 3, 3, 2 });
+        PropagationEngine engine = new PropagationEngine(s);
+        engine.add(new AllDifferentPropagator(new int[] { 0, 1, 2 }, 3));
+        engine.scheduleAll();
+        Assertions.assertTrue(engine.propagate());
+
+        SolveOptions options = new SolveOptions();
+        long[] count = new long[1];
+        new SearchEngine(engine, new int[] { 0, 1, 2, 3 }, options, new SearchLimits(options)).solve(store -> {
+            count[0]++;
+            return false;
+        });
+        Assertions.assertEquals(6 * 2, count[0]);
+        for (int v = 0; v < 4; v++) Assertions.assertEquals(s.initialSize(v), s.size(v));
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * A constraint that narrows domains in a DomainStore.
+ *
+ * The PropagationEngine runs a propagator whenever one of its watched variables changes,
+ * cheaper priorities first. A propagator marked idempotent reaches its own fixpoint in one
+ * run, so the engine does not wake it up again for changes it made itself.
+ */
+public abstract class Propagator {
+    public static final int PRIORITY_BINARY = 0;
+    public static final int PRIORITY_IMPLICATION = 1;
+    public static final int PRIORITY_GLOBAL = 2;
+    public static final int PRIORITY_COUNT = 3;
+
+    final int priority;
+    final int[] vars;
+    final boolean idempotent;
+
+    protected Propagator(int priority, int[] vars, boolean idempotent) {
+        this.priority = priority;
+        this.vars = vars;
+        this.idempotent = idempotent;
+    }
+
+    // Narrow domains; false when the constraint can no longer be satisfied
+    public abstract boolean propagate(DomainStore s);
+
+    // True when a complete assignment (values indexed by variable id) satisfies the constraint
+    public abstract boolean isSatisfied(int[] values);
+
+    // How badly a complete assignment violates the constraint, 0 when satisfied; local search
+    // minimises the sum
+    public int violation(int[] values) {
+        return isSatisfied(values) ? 0 : 1;
+    }
+}
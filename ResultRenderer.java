@@ -0,0 +1,256 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a SolveResult as text, CSV or JSON lines through one buffered Writer.
+ *
+ * Arrays come out sorted by name, their fields in the order the struct definition lists them.
+ * The "Name[i].field" labels are built once per render and reused for every solution, so
+ * rendering a solution is only buffered writes of shared strings.
+ *
+ * TEXT is the interpreter's console format and shows struct arrays only, like it always did.
+ * CSV has a header of variable names and one row per solution (the best assignment of an
+ * incomplete search is the row "best"). JSONL writes one object per solution, with each array
+ * as a list of objects (or of strings for simple variables), followed by a summary object.
+ *
+ * ALL mode's solutions only come out when the renderer is the SolutionSink of the Solve call:
+ * each one is written as the search finds it, and render() then writes the rest. Write errors
+ * during the search surface as UncheckedIOException.
+ */
+public final class ResultRenderer implements SolutionSink {
+
+    public enum Format { TEXT, CSV, JSONL }
+
+    private final Writer out;
+    private final Format format;
+
+    // the arrays to render and, per variable id, its label; built by prepare()
+    private SolveResult.Variables variables;
+    private List<SolveResult.VariableArray> arrays;
+    private String[] labels;
+
+    // begin() was called: ALL mode's solutions (and the CSV header) are already written
+    private boolean streaming = false;
+
+    public ResultRenderer(Writer out, Format format) {
+        this.out = (out instanceof BufferedWriter) ? out : new BufferedWriter(out, 1 << 16);
+        this.format = format;
+    }
+
+    @Override
+    public void begin(SolveResult.Variables variables) {
+        prepare(variables);
+        streaming = true;
+        try {
+            if (format == Format.CSV) csvHeader();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void solution(long number, int[] values) {
+        try {
+            switch (format) {
+                case TEXT:
+                    line("SOLUTION " + number + ":");
+                    textAssignment(values);
+                    break;
+                case CSV: csvRow(Long.toString(number), values); break;
+                case JSONL: jsonAssignment(Long.toString(number), values); break;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // Write the result (after the solutions streamed since begin(), if any) and flush
+    public void render(SolveResult result) throws IOException {
+        if (!streaming) prepare(result.variables());
+        switch (format) {
+            case TEXT: renderText(result); break;
+            case CSV: renderCsv(result); break;
+            case JSONL: renderJsonLines(result); break;
+        }
+        streaming = false;
+        out.flush();
+    }
+
+    private void prepare(SolveResult.Variables variables) {
+        this.variables = variables;
+        arrays = new ArrayList<>();
+        for (SolveResult.VariableArray a : variables.arrays())
+            if (format != Format.TEXT || a.fields != null) arrays.add(a);
+        arrays.sort((x, y) -> x.name.compareTo(y.name));
+
+        labels = new String[variables.count()];
+        for (SolveResult.VariableArray a : arrays) {
+            for (int i = 0; i < a.size; i++) {
+                for (int f = 0; f < a.width(); f++) {
+                    String label = a.name + "[" + i + "]" + (a.fields == null ? "" : "." + a.fields[f]);
+                    labels[a.id(i, f)] = (format == Format.TEXT) ? label + " = " : label;
+                }
+            }
+        }
+    }
+
+    // ---------- TEXT ----------
+    private void renderText(SolveResult result) throws IOException {
+        // a search cut short by a limit says which one instead of claiming there is no solution
+        String noSolution = result.isStopped() ? "STOPPED: " + result.status() + "." : "NO SOLUTION FOUND.";
+
+        if (result.mode() == SolveOptions.Mode.COUNT) {
+            line("SOLUTIONS: " + result.rawSolutionCount());
+            if (result.isSymmetryReduced()) line("SYMMETRY-REDUCED SOLUTIONS: " + result.solutionCount());
+            if (result.isStopped()) line(noSolution);
+        } else if (result.solutionCount() == 0 && result.violatedRules() > 0) {
+            line(noSolution + " BEST ASSIGNMENT VIOLATES " + result.violatedRules() + " RULES:");
+            textAssignment(result.assignmentValues());
+        } else if (result.solutionCount() == 0) {
+            line(noSolution);
+        } else if (result.mode() == SolveOptions.Mode.FIRST) {
+            line("SUCCESS:");
+            textAssignment(result.assignmentValues());
+        } else {
+            line("FOUND " + result.solutionCount() + " SOLUTIONS.");
+            if (result.isStopped()) line(noSolution);
+        }
+    }
+
+    // one "Name[i].field = value" line per field and a blank line after each instance
+    private void textAssignment(int[] values) throws IOException {
+        for (SolveResult.VariableArray a : arrays) {
+            for (int i = 0; i < a.size; i++) {
+                for (int f = 0; f < a.width(); f++) {
+                    int id = a.id(i, f);
+                    out.write(labels[id]);
+                    out.write(variables.valueString(id, values[id]));
+                    out.write('\n');
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    // ---------- CSV ----------
+    private void renderCsv(SolveResult result) throws IOException {
+        if (result.mode() == SolveOptions.Mode.COUNT) {
+            line("solutions,symmetry_reduced_solutions");
+            line(result.rawSolutionCount() + "," + result.solutionCount());
+            return;
+        }
+
+        if (!streaming) csvHeader();
+        String key = firstOrBest(result);
+        if (key != null) csvRow(key, result.assignmentValues());
+    }
+
+    private void csvHeader() throws IOException {
+        out.write("solution");
+        for (SolveResult.VariableArray a : arrays) {
+            for (int id = a.firstId; id < a.firstId + a.size * a.width(); id++) {
+                out.write(',');
+                csvField(labels[id]);
+            }
+        }
+        out.write('\n');
+    }
+
+    // the row key of the result's own assignment: "1" for FIRST mode's solution, "best" for the
+    // best assignment of an incomplete search, null when there is nothing (more) to write
+    private static String firstOrBest(SolveResult result) {
+        if (result.solutionCount() == 0) return result.hasAssignment() ? "best" : null;
+        return (result.mode() == SolveOptions.Mode.FIRST) ? "1" : null;
+    }
+
+    private void csvRow(String key, int[] values) throws IOException {
+        out.write(key);
+        for (SolveResult.VariableArray a : arrays) {
+            for (int id = a.firstId; id < a.firstId + a.size * a.width(); id++) {
+                out.write(',');
+                csvField(variables.valueString(id, values[id]));
+            }
+        }
+        out.write('\n');
+    }
+
+    private void csvField(String s) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(s);
+            return;
+        }
+        out.write('"');
+        out.write(s.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    // ---------- JSONL ----------
+    private void renderJsonLines(SolveResult result) throws IOException {
+        String key = firstOrBest(result);
+        if (key != null) jsonAssignment(key.equals("best") ? "\"best\"" : key, result.assignmentValues());
+
+        out.write("{\"status\":\"" + result.status() + "\",\"solutions\":" + result.solutionCount()
+                + ",\"rawSolutions\":" + result.rawSolutionCount());
+        if (result.violatedRules() >= 0) out.write(",\"violatedRules\":" + result.violatedRules());
+        out.write(",\"backend\":\"" + result.backend() + "\",\"nodes\":" + result.nodes()
+                + ",\"millis\":" + result.elapsedNanos() / 1_000_000 + "}\n");
+    }
+
+    private void jsonAssignment(String key, int[] values) throws IOException {
+        out.write("{\"solution\":");
+        out.write(key);
+        for (SolveResult.VariableArray a : arrays) {
+            out.write(',');
+            jsonString(a.name);
+            out.write(":[");
+            for (int i = 0; i < a.size; i++) {
+                if (i > 0) out.write(',');
+                if (a.fields == null) {
+                    jsonString(variables.valueString(a.id(i, 0), values[a.id(i, 0)]));
+                    continue;
+                }
+                out.write('{');
+                for (int f = 0; f < a.width(); f++) {
+                    if (f > 0) out.write(',');
+                    int id = a.id(i, f);
+                    jsonString(a.fields[f]);
+                    out.write(':');
+                    jsonString(variables.valueString(id, values[id]));
+                }
+                out.write('}');
+            }
+            out.write(']');
+        }
+        out.write("}\n");
+    }
+
+    private void jsonString(String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    private void line(String s) throws IOException {
+        out.write(s);
+        out.write('\n');
+    }
+}
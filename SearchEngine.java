@@ -0,0 +1,276 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Depth-first search over a PropagationEngine: pick a variable, try its values one at a time,
+ * propagate, and undo through the trail on the way back.
+ *
+ * With the default options variables are taken in the given order and values ascending, which
+ * reproduces the interpreter's odometer order. Otherwise dom/wdeg chooses variables (failure
+ * weights are learned from the propagator that failed), ties and value order can be
+ * randomized from a fixed seed, and runs restart on a Luby or geometric fail budget. Weights
+ * survive restarts.
+ *
+ * Limited discrepancy search walks the same tree in iterations instead: iteration k only
+ * follows paths that deviate k times from the heuristic, where taking the i-th value of a
+ * variable counts as i deviations, and only reports the leaves that use exactly k. That needs
+ * every iteration to build the same tree, so under LDS failure weights are not learned and the
+ * random choices at a node are seeded from the decisions on the path to it, not drawn from one
+ * stream that a larger iteration would advance further.
+ */
+public class SearchEngine {
+
+    public interface Listener {
+        // all variables fixed and propagated; true stops the search
+        boolean solution(DomainStore store);
+    }
+
+    private static final int EXHAUSTED = 0;
+    private static final int STOPPED = 1;
+    private static final int BUDGET = 2;
+    private static final int LIMIT = 3;
+
+    private final PropagationEngine engine;
+    private final DomainStore store;
+    private final int[] branchVars;
+    private final SolveOptions options;
+    private final Random random;
+
+    private final long[] weight;      // failure weight per variable id
+    private int[][] valueBuffer;      // values still to try, per depth
+
+    private long nodes = 0;
+    private long failures = 0;
+    private long restarts = 0;
+    private long budget = Long.MAX_VALUE;
+    private long nodeLimit = Long.MAX_VALUE;
+    private boolean limitReached = false;
+    private final SearchLimits limits;
+
+    // limited discrepancy search: the budget of this iteration, what the current path used,
+    // and whether the budget cut off any branch
+    private int discrepancyLimit = Integer.MAX_VALUE;
+    private int discrepanciesUsed = 0;
+    private boolean discrepancyCut = false;
+    private int iterations = 0;
+    private int solutionDiscrepancies = -1;
+
+    // limits: the time, node and cancellation limits of the whole run, shared with the other
+    // searches it makes
+    public SearchEngine(PropagationEngine engine, int[] branchVars, SolveOptions options, SearchLimits limits) {
+        this.engine = engine;
+        this.store = engine.store();
+        this.branchVars = branchVars;
+        this.options = options;
+        this.random = new Random(options.seed);
+        this.weight = new long[store.variableCount()];
+        this.valueBuffer = new int[branchVars.length + 1][];
+        this.limits = limits;
+    }
+
+    public long nodes() {
+        return nodes;
+    }
+
+    public long failures() {
+        return failures;
+    }
+
+    public long restarts() {
+        return restarts;
+    }
+
+    // LDS iterations started by the last solve()
+    public int iterations() {
+        return iterations;
+    }
+
+    // deviations from the heuristic on the path to the last solution, -1 before one is found
+    public int discrepancies() {
+        return solutionDiscrepancies;
+    }
+
+    // Give up once this many nodes have been expanded
+    public void setNodeLimit(long limit) {
+        nodeLimit = limit;
+    }
+
+    // true when the last solve() stopped at the node limit or one of the run's limits
+    public boolean limitReached() {
+        return limitReached;
+    }
+
+    // Search from the current (already propagated) state; true when the listener stopped it
+    public boolean solve(Listener listener) {
+        boolean restarting = options.restarts != SolveOptions.Restarts.NONE
+                && options.mode == SolveOptions.Mode.FIRST;
+        limitReached = false;
+        if (options.searchOrder == SolveOptions.SearchOrder.LDS) return solveLds(listener);
+
+        for (int run = 1; ; run++) {
+            budget = restarting ? failures + runBudget(run) : Long.MAX_VALUE;
+            int level = store.checkpoint();
+            int result = dfs(listener, 0, options.seed);
+            store.restore(level);
+
+            if (result == LIMIT) {
+                limitReached = true;
+                return false;
+            }
+            if (result != BUDGET) return result == STOPPED;
+            restarts++;
+        }
+    }
+
+    // iterations with 0, 1, 2, ... discrepancies until one stops the listener or the last one
+    // was not cut short, i.e. the whole tree has been seen
+    private boolean solveLds(Listener listener) {
+        iterations = 0;
+        for (int limit = 0; ; limit++) {
+            iterations++;
+            discrepancyLimit = limit;
+            discrepanciesUsed = 0;
+            discrepancyCut = false;
+            int level = store.checkpoint();
+            int result = dfs(listener, 0, options.seed);
+            store.restore(level);
+
+            if (result == LIMIT) {
+                limitReached = true;
+                return false;
+            }
+            if (result == STOPPED) return true;
+            if (!discrepancyCut) return false;
+        }
+    }
+
+    private long runBudget(int run) {
+        long base = Math.max(1, options.restartBase);
+        // a growth of 1 or less would never finish a run that needs more than base fails
+        if (options.restarts == SolveOptions.Restarts.LUBY || !(options.restartGrowth > 1.0))
+            return base * luby(run);
+        double g = base * Math.pow(options.restartGrowth, run - 1);
+        return (g >= Long.MAX_VALUE) ? Long.MAX_VALUE : (long) g;
+    }
+
+    // 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+    static long luby(int i) {
+        int k = 1;
+        while ((1L << k) - 1 < i) k++;
+        while (true) {
+            if (i == (1L << k) - 1) return 1L << (k - 1);
+            i -= (int) ((1L << (k - 1)) - 1);
+            k = 1;
+            while ((1L << k) - 1 < i) k++;
+        }
+    }
+
+    // path: seed of the random choices at this node under LDS, from the decisions above it
+    private int dfs(Listener listener, int depth, long path) {
+        boolean lds = options.searchOrder == SolveOptions.SearchOrder.LDS;
+        if (lds && options.randomize) random.setSeed(path);
+        int var = selectVariable();
+        if (var < 0) {
+            // a leaf with fewer discrepancies was already reported by an earlier iteration
+            if (discrepancyLimit != Integer.MAX_VALUE && discrepanciesUsed != discrepancyLimit)
+                return EXHAUSTED;
+            solutionDiscrepancies = discrepanciesUsed;
+            return listener.solution(store) ? STOPPED : EXHAUSTED;
+        }
+        if (nodes >= nodeLimit || limits.node()) return LIMIT;
+        nodes++;
+
+        int count = orderValues(var, depth);
+        int[] values = valueBuffer[depth];
+        int used = discrepanciesUsed;
+        for (int k = 0; k < count; k++) {
+            if (k > discrepancyLimit - used) {
+                discrepancyCut = true;
+                break;
+            }
+            int level = store.checkpoint();
+            if (store.assign(var, values[k]) && propagate()) {
+                discrepanciesUsed = used + k;
+                int result = dfs(listener, depth + 1, lds ? childPath(path, var, values[k]) : path);
+                discrepanciesUsed = used;
+                if (result != EXHAUSTED) {
+                    store.restore(level);
+                    return result;
+                }
+            }
+            store.restore(level);
+            if (failures >= budget) return BUDGET;
+        }
+        return EXHAUSTED;
+    }
+
+    private boolean propagate() {
+        if (engine.propagate()) return true;
+        failures++;
+        Propagator p = engine.lastFailure();
+        if (p != null && options.searchOrder != SolveOptions.SearchOrder.LDS)
+            for (int v : p.vars) weight[v]++;
+        return false;
+    }
+
+    // seed for the child reached by var = value (splitmix64 finalizer over both)
+    private static long childPath(long path, int var, int value) {
+        long z = path + 0x9E3779B97F4A7C15L * ((((long) var) << 32 | value) + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // ---------- heuristics ----------
+    private int selectVariable() {
+        if (options.variableOrder == SolveOptions.VariableOrder.INPUT && !options.randomize) {
+            for (int v : branchVars)
+                if (!store.isFixed(v)) return v;
+            return -1;
+        }
+
+        // dom/wdeg (or plain input order with random ties): smallest size / weight wins
+        int best = -1;
+        double bestScore = Double.MAX_VALUE;
+        int ties = 0;
+        for (int pos = 0; pos < branchVars.length; pos++) {
+            int v = branchVars[pos];
+            if (store.isFixed(v)) continue;
+            double score = (options.variableOrder == SolveOptions.VariableOrder.DOM_WDEG)
+                    ? store.size(v) / (double) (1 + weight[v])
+                    : 0;
+            if (score < bestScore) {
+                best = v;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && options.randomize && random.nextInt(++ties) == 0) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    // live values of var into valueBuffer[depth], ascending or shuffled; returns the count
+    private int orderValues(int var, int depth) {
+        int size = store.size(var);
+        int[] buf = valueBuffer[depth];
+        if (buf == null || buf.length < size) {
+            buf = new int[Math.max(size, 8)];
+            if (depth >= valueBuffer.length) valueBuffer = Arrays.copyOf(valueBuffer, depth * 2 + 1);
+            valueBuffer[depth] = buf;
+        }
+
+        int count = 0;
+        for (int v = store.min(var); v >= 0; v = store.next(var, v + 1)) buf[count++] = v;
+
+        if (options.randomize) {
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = buf[i];
+                buf[i] = buf[j];
+                buf[j] = t;
+            }
+        }
+        return count;
+    }
+}
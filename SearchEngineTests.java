@@ -0,0 +1,412 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class SearchEngineTests {
+    private static final String[] PROGRAMS = {
+            "C = {R, G, B}\n" +
+                    "P = [C a, C b]\n" +
+                    "var Ps : P[3]\n" +
+                    "Ps[0].a != Ps[1].b\n" +
+                    "Ps.a = R =>\n" +
+                    "    Ps.b != G\n",
+            "D = {d0, d1, d2, d3}\n" +
+                    "E = {e0, e1, e2}\n" +
+                    "T = [unique D d, E e]\n" +
+                    "var Ts : T[3]\n" +
+                    "var X : E[2]\n" +
+                    "X[0] != X[1]\n" +
+                    "Ts[0].e = X[1]\n" +
+                    "Ts.d = d2 =>\n" +
+                    "    Ts.e != e0\n",
+            "A = {a0, a1}\n" +
+                    "var Xs : A[6]\n" +
+                    "Xs[0] != Xs[1]\n" +
+                    "Xs[2] = Xs[3]\n" +
+                    "Xs[4] != a1\n",
+    };
+
+    // every LDS iteration must walk the same tree, whatever the heuristic options
+    @Test
+    public void ldsCountsMatchDfs() throws Exception {
+        for (String code : PROGRAMS) {
+            long dfs = solve(code, SolveOptions.Mode.COUNT, SolveOptions.SearchOrder.DFS, false,
+                    SolveOptions.VariableOrder.INPUT).solutionCount();
+            for (boolean randomize : new boolean[] { false, true }) {
+                for (SolveOptions.VariableOrder order : SolveOptions.VariableOrder.values()) {
+                    SolveResult lds = solve(code, SolveOptions.Mode.COUNT, SolveOptions.SearchOrder.LDS,
+                            randomize, order);
+                    Assertions.assertEquals(dfs, lds.solutionCount(), code + " randomize=" + randomize + " " + order);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void ldsFindsSolutionWhenDfsDoes() throws Exception {
+        for (String code : PROGRAMS) {
+            for (SolveOptions.VariableOrder order : SolveOptions.VariableOrder.values()) {
+                SolveResult dfs = solve(code, SolveOptions.Mode.FIRST, SolveOptions.SearchOrder.DFS, true, order);
+                SolveResult lds = solve(code, SolveOptions.Mode.FIRST, SolveOptions.SearchOrder.LDS, true, order);
+                Assertions.assertEquals(dfs.status(), lds.status(), code + " " + order);
+            }
+        }
+    }
+
+    // far more complete assignments than the reorder interval, so the check order changes
+    // several times during the count; each of the 4 instances allows 15 of its 16 (a, b) pairs
+    @Test
+    public void failFirstOrderKeepsCounts() throws Exception {
+        String code = "C = {R, G, B, Y}\n" +
+                "P = [C a, C b]\n" +
+                "var Ps : P[4]\n" +
+                "Ps.a = R =>\n" +
+                "    Ps.b != G\n";
+        SolveOptions options = new SolveOptions();
+        options.mode = SolveOptions.Mode.COUNT;
+        options.breakSymmetry = false;
+        Assertions.assertEquals(15 * 15 * 15 * 15, solve(code, options).solutionCount());
+
+        options.mode = SolveOptions.Mode.FIRST;
+        SolveResult first = solve(code, options);
+        for (int i = 0; i < 4; i++)
+            Assertions.assertFalse(first.value(2 * i) == 0 && first.value(2 * i + 1) == 1);
+    }
+
+    // X[0] = X[1] = X[2] merge into one variable, which cannot differ from itself
+    @Test
+    public void presolveProvesNoSolution() throws Exception {
+        String code = "A = {a0, a1, a2}\n" +
+                "var X : A[3]\n" +
+                "X[0] = X[1]\n" +
+                "X[1] = X[2]\n" +
+                "X[0] != X[2]\n";
+        SolveResult result = solve(code, new SolveOptions());
+        Assertions.assertEquals(SolveResult.Status.NO_SOLUTION, result.status());
+        Assertions.assertEquals("presolve", result.backend());
+        Assertions.assertEquals(0, result.nodes());
+    }
+
+    // merged variables still count once per value of their class
+    @Test
+    public void presolveKeepsCounts() throws Exception {
+        String code = "A = {a0, a1, a2}\n" +
+                "var X : A[4]\n" +
+                "X[0] = X[1]\n" +
+                "X[1] = X[2]\n" +
+                "X[3] != X[2]\n";
+        SolveOptions options = new SolveOptions();
+        options.mode = SolveOptions.Mode.COUNT;
+        options.breakSymmetry = false;
+        Assertions.assertEquals(3 * 2, solve(code, options).solutionCount());
+
+        options.mode = SolveOptions.Mode.FIRST;
+        SolveResult first = solve(code, options);
+        Assertions.assertEquals(first.value(0), first.value(2));
+        Assertions.assertNotEquals(first.value(2), first.value(3));
+    }
+
+    // a permutation struct counts the same through its dual model in the general engine as
+    // through DLX; the free W only keeps the struct off the permutation backends
+    @Test
+    public void dualModelCountsMatchDlx() throws Exception {
+        String code = "A = {a1, a2, a3, a4}\n" +
+                "B = {b1, b2, b3, b4}\n" +
+                "S = [unique A a, unique B b]\n" +
+                "var Ss : S[4]\n" +
+                "Ss.a = a1 =>\n" +
+                "    Ss.b != b1\n";
+        String withFree = code.replace("var Ss", "Z = {z1, z2}\nvar W : Z\nvar Ss");
+        SolveOptions options = new SolveOptions();
+        options.mode = SolveOptions.Mode.COUNT;
+        options.breakSymmetry = false;
+        SolveResult dlx = solve(code, options);
+        SolveResult search = solve(withFree, options);
+        Assertions.assertEquals("dlx", dlx.backend());
+        Assertions.assertEquals("search", search.backend());
+        Assertions.assertEquals(2 * dlx.solutionCount(), search.solutionCount());
+        Assertions.assertEquals(2 * 18 * 24, search.solutionCount());
+    }
+
+    // the logic grid and the general engine agree on a puzzle with one solution
+    @Test
+    public void logicGridMatchesGeneralEngine() throws Exception {
+        String code = "A = {a1, a2, a3}\n" +
+                "B = {b1, b2, b3}\n" +
+                "S = [unique A a, unique B b]\n" +
+                "var Ss : S[3]\n" +
+                "Ss[0].a = a2\n" +
+                "Ss[1].a = a3\n" +
+                "Ss[0].b != b2\n" +
+                "Ss.a = a1 =>\n" +
+                "    Ss.b = b3\n";
+        SolveOptions options = new SolveOptions();
+        SolveResult grid = solve(code, options);
+        SolveResult search = solve(code.replace("var Ss", "Z = {z1, z2}\nvar W : Z\nvar Ss"), options);
+        Assertions.assertEquals("logic-grid", grid.backend());
+        Assertions.assertEquals("search", search.backend());
+        Map<String, String> expected = Map.of(
+                "Ss[0].a", "a2", "Ss[0].b", "b1",
+                "Ss[1].a", "a3", "Ss[1].b", "b2",
+                "Ss[2].a", "a1", "Ss[2].b", "b3");
+        Assertions.assertEquals(expected, values(grid, "Ss["));
+        Assertions.assertEquals(expected, values(search, "Ss["));
+    }
+
+    // rows (i, v) covering instance i and value v: the exact covers are the permutations, and a
+    // rejected row takes out every permutation that uses it
+    @Test
+    public void dancingLinksCountsPermutations() {
+        int n = 4;
+        DancingLinks dlx = new DancingLinks(2 * n);
+        for (int i = 0; i < n; i++)
+            for (int v = 0; v < n; v++) dlx.addRow(i, n + v);
+        long[] count = new long[1];
+        int rejected = 1;   // instance 0 takes value 1
+        dlx.solve(new DancingLinks.Listener() {
+            public boolean select(int row) {
+                return row != rejected;
+            }
+
+            public void unselect(int row) {
+            }
+
+            public boolean solution(int[] rows, int depth) {
+                Assertions.assertEquals(n, depth);
+                count[0]++;
+                return false;
+            }
+        });
+        Assertions.assertEquals(24 - 6, count[0]);
+    }
+
+    // random permutation puzzles count the same through DLX as through the general engine
+    @Test
+    public void dlxCountsMatchGeneralEngine() throws Exception {
+        Random random = new Random(32);
+        SolveOptions options = new SolveOptions();
+        options.mode = SolveOptions.Mode.COUNT;
+        options.breakSymmetry = false;
+        for (int round = 0; round < 20; round++) {
+            int n = 3 + random.nextInt(2);
+            StringBuilder code = new StringBuilder();
+            for (String type : new String[] { "A", "B" }) {
+                code.append(type).append(" = {");
+                for (int v = 0; v < n; v++) code.append(v == 0 ? "" : ", ").append(type.toLowerCase()).append(v);
+                code.append("}\n");
+            }
+            code.append("S = [unique A a, unique B b]\nvar Ss : S[").append(n).append("]\n");
+            for (int k = random.nextInt(4); k > 0; k--) {
+                int i = random.nextInt(n), u = random.nextInt(n), v = random.nextInt(n);
+                switch (random.nextInt(3)) {
+                    case 0 -> code.append("Ss[").append(i).append("].b != b").append(v).append('\n');
+                    case 1 -> code.append("Ss.a = a").append(u).append(" =>\n    Ss.b != b").append(v).append('\n');
+                    default -> code.append("Ss.a = a").append(u).append(" =>\n    Ss.b = b").append(v).append('\n');
+                }
+            }
+            String program = code.toString();
+            SolveResult dlx = solve(program, options);
+            SolveResult search = solve(program.replace("var Ss", "Z = {z1, z2}\nvar W : Z\nvar Ss"), options);
+            Assertions.assertEquals("dlx", dlx.backend(), program);
+            Assertions.assertEquals(2 * dlx.solutionCount(), search.solutionCount(), program);
+        }
+    }
+
+    // three interchangeable instances with 8 allowed (a, b) pairs each: symmetry breaking counts
+    // the 120 multisets of pairs and still reports all 8^3 assignments; ALL mode ignores it
+    @Test
+    public void symmetryBreakingKeepsRawCount() throws Exception {
+        String code = "C = {R, G, B}\n" +
+                "P = [C a, C b]\n" +
+                "var Ps : P[3]\n" +
+                "Ps.a = R =>\n" +
+                "    Ps.b != G\n";
+        SolveOptions options = new SolveOptions();
+        options.mode = SolveOptions.Mode.COUNT;
+        options.breakSymmetry = true;
+        SolveResult reduced = solve(code, options);
+        Assertions.assertTrue(reduced.isSymmetryReduced());
+        Assertions.assertEquals(120, reduced.solutionCount());
+        Assertions.assertEquals(BigInteger.valueOf(512), reduced.rawSolutionCount());
+
+        options.breakSymmetry = false;
+        SolveResult full = solve(code, options);
+        Assertions.assertFalse(full.isSymmetryReduced());
+        Assertions.assertEquals(512, full.solutionCount());
+        Assertions.assertEquals(BigInteger.valueOf(512), full.rawSolutionCount());
+
+        options.mode = SolveOptions.Mode.ALL;
+        for (boolean breakSymmetry : new boolean[] { true, false }) {
+            options.breakSymmetry = breakSymmetry;
+            Assertions.assertEquals(512, solve(code, options).solutionCount());
+        }
+    }
+
+    // the same seed gives the same run, restarts included
+    @Test
+    public void seedReproducesRun() throws Exception {
+        for (String code : PROGRAMS) {
+            SolveOptions options = new SolveOptions();
+            options.randomize = true;
+            options.seed = 7;
+            options.restarts = SolveOptions.Restarts.LUBY;
+            options.restartBase = 1;
+            SolveResult a = solve(code, options);
+            SolveResult b = solve(code, options);
+            Assertions.assertArrayEquals(a.assignment(), b.assignment(), code);
+            Assertions.assertEquals(a.nodes(), b.nodes(), code);
+            Assertions.assertEquals(a.restarts(), b.restarts(), code);
+        }
+    }
+
+    // five values for six pairwise different variables: every schedule restarts and still
+    // proves there is no solution, including GEOMETRIC with a growth that would never grow
+    @Test
+    public void restartsStayComplete() throws Exception {
+        StringBuilder code = new StringBuilder("A = {a0, a1, a2, a3, a4}\nvar X : A[6]\n");
+        for (int i = 0; i < 6; i++)
+            for (int j = i + 1; j < 6; j++) code.append("X[").append(i).append("] != X[").append(j).append("]\n");
+        for (double growth : new double[] { 1.0, 1.5 }) {
+            for (SolveOptions.Restarts restarts : new SolveOptions.Restarts[] {
+                    SolveOptions.Restarts.LUBY, SolveOptions.Restarts.GEOMETRIC }) {
+                SolveOptions options = new SolveOptions();
+                options.randomize = true;
+                options.restarts = restarts;
+                options.restartBase = 1;
+                options.restartGrowth = growth;
+                SolveResult result = solve(code.toString(), options);
+                Assertions.assertEquals(SolveResult.Status.NO_SOLUTION, result.status(), restarts + " " + growth);
+                Assertions.assertTrue(result.restarts() > 0, restarts + " " + growth);
+            }
+        }
+    }
+
+    // local search ends on a solution of each program
+    @Test
+    public void localSearchSolvesPrograms() throws Exception {
+        for (String code : PROGRAMS) {
+            SolveOptions options = new SolveOptions();
+            options.strategy = SolveOptions.Strategy.LOCAL_SEARCH;
+            SolveResult result = solve(code, options);
+            Assertions.assertEquals(SolveResult.Status.SUCCESS, result.status(), code);
+            Assertions.assertEquals("local-search", result.backend(), code);
+            Assertions.assertTrue(result.hasAssignment(), code);
+        }
+
+        SolveOptions options = new SolveOptions();
+        List<Propagator> distinct = List.of(new AllDifferentPropagator(new int[] { 0, 1, 2 }, 3));
+        LocalSearch search = new LocalSearch(new int[] { 3, 3, 3 }, distinct, options, new SearchLimits(options));
+        Assertions.assertTrue(search.solve());
+        Assertions.assertEquals(0, search.bestViolated());
+        int[] best = search.best();
+        Assertions.assertTrue(best[0] != best[1] && best[1] != best[2] && best[0] != best[2]);
+
+        // no values at all: nothing to move, and no assignment can hold
+        List<Propagator> empty = List.of(new AllDifferentPropagator(new int[] { 0, 1 }, 0));
+        search = new LocalSearch(new int[] { 0, 0 }, empty, options, new SearchLimits(options));
+        Assertions.assertFalse(search.solve());
+        Assertions.assertEquals(0, search.steps());
+    }
+
+    // LNS ends on a solution of each program; an array without instances has nothing to free
+    @Test
+    public void lnsSolvesPrograms() throws Exception {
+        String empty = "C = {R, G, B}\n" +
+                "P = [C a, C b]\n" +
+                "var Qs : P[0]\n" +
+                "var Ps : P[2]\n" +
+                "Ps[0].a != Ps[1].a\n";
+        List<String> programs = new ArrayList<>(List.of(PROGRAMS));
+        programs.add(empty);
+        for (String code : programs) {
+            SolveOptions options = new SolveOptions();
+            options.strategy = SolveOptions.Strategy.LNS;
+            SolveResult result = solve(code, options);
+            Assertions.assertEquals(SolveResult.Status.SUCCESS, result.status(), code);
+            Assertions.assertEquals("lns", result.backend(), code);
+        }
+    }
+
+    // nine values for ten pairwise different variables: far too many nodes to finish, so each
+    // run ends on the limit it was given
+    @Test
+    public void limitsStopSearch() throws Exception {
+        StringBuilder code = new StringBuilder("A = {a0, a1, a2, a3, a4, a5, a6, a7, a8}\nvar X : A[10]\n");
+        for (int i = 0; i < 10; i++)
+            for (int j = i + 1; j < 10; j++) code.append("X[").append(i).append("] != X[").append(j).append("]\n");
+        String program = code.toString();
+
+        SolveOptions options = new SolveOptions();
+        options.timeLimitMillis = 1;
+        SolveResult result = solve(program, options);
+        Assertions.assertEquals(SolveResult.Status.TIMEOUT, result.status());
+        Assertions.assertTrue(result.isStopped());
+
+        options = new SolveOptions();
+        options.mode = SolveOptions.Mode.COUNT;
+        options.maxNodes = 1000;
+        options.timeLimitMillis = Long.MAX_VALUE;
+        result = solve(program, options);
+        Assertions.assertEquals(SolveResult.Status.LIMIT, result.status());
+        Assertions.assertEquals(1001, result.nodes());
+
+        options = new SolveOptions();
+        options.cancellation = new CancellationToken();
+        options.cancellation.cancel();
+        Assertions.assertEquals(SolveResult.Status.CANCELLED, solve(program, options).status());
+    }
+
+    @Test
+    public void searchLimitsStayHit() {
+        SolveOptions options = new SolveOptions();
+        options.maxNodes = 3;
+        SearchLimits limits = new SearchLimits(options);
+        for (int i = 0; i < 3; i++) Assertions.assertFalse(limits.node());
+        Assertions.assertTrue(limits.node());
+        Assertions.assertEquals(SearchLimits.Status.LIMIT, limits.status());
+        Assertions.assertTrue(limits.poll());
+
+        // a limit too far away for a nanosecond deadline is no limit
+        options = new SolveOptions();
+        options.timeLimitMillis = Long.MAX_VALUE;
+        Assertions.assertFalse(new SearchLimits(options).poll());
+
+        options.cancellation = new CancellationToken();
+        limits = new SearchLimits(options);
+        Assertions.assertFalse(limits.poll());
+        options.cancellation.cancel();
+        Assertions.assertTrue(limits.poll());
+        Assertions.assertEquals(SearchLimits.Status.CANCELLED, limits.status());
+    }
+
+    // names starting with prefix to their value in the result's assignment
+    private static Map<String, String> values(SolveResult result, String prefix) {
+        Map<String, String> values = new HashMap<>();
+        for (int id = 0; id < result.variableCount(); id++)
+            if (result.name(id).startsWith(prefix)) values.put(result.name(id), result.valueString(id));
+        return values;
+    }
+
+    private static SolveResult solve(String code, SolveOptions options) throws Exception {
+        var ast = new NushaFall2025Parser().Nusha(new Lexer(code).Lex()).orElseThrow();
+        return new Interpreter().Solve(ast, options);
+    }
+
+    private static SolveResult solve(String code, SolveOptions.Mode mode, SolveOptions.SearchOrder searchOrder,
+                                     boolean randomize, SolveOptions.VariableOrder variableOrder) throws Exception {
+        var ast = new NushaFall2025Parser().Nusha(new Lexer(code).Lex()).orElseThrow();
+        SolveOptions options = new SolveOptions();
+        options.mode = mode;
+        options.breakSymmetry = false;
+        options.searchOrder = searchOrder;
+        options.randomize = randomize;
+        options.variableOrder = variableOrder;
+        return new Interpreter().Solve(ast, options);
+    }
+}
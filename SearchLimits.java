@@ -0,0 +1,69 @@
+/**
+ * Time, node and cancellation limits of one run, shared by every search backend.
+ *
+ * Backends call node() once per search node. The node count is checked every time; the clock,
+ * the cancellation token and the thread's interrupt flag only every CHECK_INTERVAL nodes, so
+ * the common path is an increment and two compares. Once a limit is hit it stays hit.
+ */
+public class SearchLimits {
+    public enum Status {
+        NONE,        // no limit hit
+        TIMEOUT,     // SolveOptions.timeLimitMillis passed
+        LIMIT,       // a node or step limit was reached
+        CANCELLED    // the token was cancelled or the thread interrupted
+    }
+
+    private static final int CHECK_INTERVAL = 256;
+    private static final long MAX_MILLIS = Long.MAX_VALUE / 2_000_000L;
+
+    private final long deadline;     // System.nanoTime() value, Long.MAX_VALUE for none
+    private final long maxNodes;
+    private final CancellationToken token;
+
+    private long nodes = 0;
+    private Status status = Status.NONE;
+
+    public SearchLimits(SolveOptions options) {
+        // past MAX_MILLIS (about 146 years) the nanosecond deadline would overflow: no limit
+        long millis = options.timeLimitMillis;
+        this.deadline = (millis > 0 && millis <= MAX_MILLIS)
+                ? System.nanoTime() + millis * 1_000_000L
+                : Long.MAX_VALUE;
+        this.maxNodes = options.maxNodes;
+        this.token = options.cancellation;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public boolean isStopped() {
+        return status != Status.NONE;
+    }
+
+    public long nodes() {
+        return nodes;
+    }
+
+    // Count one search node; true when the search should unwind
+    public boolean node() {
+        if (status != Status.NONE) return true;
+        if (++nodes > maxNodes) return stop(Status.LIMIT);
+        return (nodes & (CHECK_INTERVAL - 1)) == 0 && poll();
+    }
+
+    // Look at the clock, the token and the interrupt flag now; true when the search should stop
+    public boolean poll() {
+        if (status != Status.NONE) return true;
+        if ((token != null && token.isCancelled()) || Thread.currentThread().isInterrupted())
+            return stop(Status.CANCELLED);
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) return stop(Status.TIMEOUT);
+        return false;
+    }
+
+    // Record that a limit was hit (the first one wins); always true
+    public boolean stop(Status reason) {
+        if (status == Status.NONE) status = reason;
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Receives ALL mode's solutions while the search runs, so they can be written out as they are
+ * found instead of being kept in memory. Pass one to Interpreter.Solve; ResultRenderer is one.
+ */
+public interface SolutionSink {
+    // once, before the search starts
+    void begin(SolveResult.Variables variables);
+
+    // every solution in the order found, numbered from 1; values is indexed by variable id and
+    // only valid during the call
+    void solution(long number, int[] values);
+}
@@ -0,0 +1,93 @@
+/**
+ * Settings for one Interpreter run. Public fields with defaults, set what you need:
+ *
+ *   SolveOptions o = new SolveOptions();
+ *   o.mode = SolveOptions.Mode.COUNT;
+ *   new Interpreter().Interpret(tree, o);          // prints, like the original
+ *   SolveResult r = new Interpreter().Solve(tree, o);   // prints nothing
+ */
+public class SolveOptions {
+    public enum Mode {
+        FIRST,   // stop at the first solution (the original behaviour)
+        ALL,     // print every solution
+        COUNT    // only count solutions
+    }
+
+    public Mode mode = Mode.FIRST;
+
+    // how Interpret prints the result (Solve prints nothing)
+    public ResultRenderer.Format output = ResultRenderer.Format.TEXT;
+
+    public enum Strategy {
+        COMPLETE,      // exact search (backtracking, logic grid or DLX)
+        LOCAL_SEARCH,  // min-conflicts / tabu: fast, but may end with violated rules;
+                       // always stops at the first solution, whatever the mode
+        LNS            // large neighborhood search: re-solves one struct instance or field
+                       // column at a time with the exact engine; same caveats as LOCAL_SEARCH
+    }
+
+    public Strategy strategy = Strategy.COMPLETE;
+
+    // ALL and COUNT stop after this many solutions
+    public long maxSolutions = Long.MAX_VALUE;
+
+    // COUNT only: when no rule indexes a struct array directly its instances are
+    // interchangeable; order them lexicographically so each solution is found once instead of
+    // once per permutation, and report the raw count and the symmetry-reduced count. FIRST and
+    // ALL always search every permutation, so their output is the original one.
+    public boolean breakSymmetry = true;
+
+    // ---------- search heuristics (general engine) ----------
+    public enum VariableOrder {
+        INPUT,     // odometer order: same first solution as the original interpreter
+        DOM_WDEG   // smallest domain per failure weight first
+    }
+
+    public enum Restarts { NONE, LUBY, GEOMETRIC }
+
+    public enum SearchOrder {
+        DFS,   // plain depth-first
+        LDS    // limited discrepancy: paths with 0, 1, 2, ... deviations from the heuristic
+               // first; helps when the heuristic is good. Restarts are not used with it, and
+               // DOM_WDEG learns no weights under it (every iteration must see the same tree).
+    }
+
+    public VariableOrder variableOrder = VariableOrder.INPUT;
+    public SearchOrder searchOrder = SearchOrder.DFS;
+
+    // break heuristic ties (and order values) at random, from this seed
+    public boolean randomize = false;
+    public long seed = 42;
+
+    // FIRST mode only: restart when a run exceeds its fail budget. Run k may fail
+    // restartBase * luby(k) times, or restartBase * restartGrowth^k times for GEOMETRIC
+    // (Luby when restartGrowth is not above 1, which would restart forever).
+    // Failure weights and rule statistics are kept across restarts.
+    public Restarts restarts = Restarts.NONE;
+    public int restartBase = 100;
+    public double restartGrowth = 1.5;
+
+    // ---------- limits ----------
+
+    // When a limit stops the search the output names it (STOPPED: TIMEOUT, LIMIT or
+    // CANCELLED) instead of NO SOLUTION FOUND. Limits are checked every few hundred nodes.
+
+    // wall-clock limit in milliseconds for the whole run, 0 for none
+    public long timeLimitMillis = 0;
+
+    // complete search: nodes expanded at most, over all backends together
+    public long maxNodes = Long.MAX_VALUE;
+
+    // cancel() from another thread stops the run; interrupting the solving thread does too
+    public CancellationToken cancellation = null;
+
+    // LOCAL_SEARCH: maximum number of moves
+    public long maxSteps = 1_000_000;
+
+    // LOCAL_SEARCH: a value just moved away from stays forbidden for this many steps
+    public int tabuTenure = 10;
+
+    // LNS: neighborhoods re-solved at most, and search nodes allowed per neighborhood
+    public long lnsRounds = 10_000;
+    public long lnsNodeLimit = 1000;
+}
@@ -0,0 +1,254 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What one Interpreter run found, without any printing.
+ *
+ * Values are dense int arrays indexed by variable id, each value an index into the variable's
+ * choice list. Names and value strings are only built when asked for. Struct arrays occupy
+ * consecutive ids: field f of instance i of an array is {@code firstId + i * fields.length + f},
+ * fields in schema order.
+ *
+ * Only the counts and the first solution are kept. ALL mode's solutions go to the SolutionSink
+ * given to Interpreter.Solve as they are found.
+ */
+public final class SolveResult {
+
+    public enum Status {
+        SUCCESS,       // at least one solution, and the search ran to its normal end
+        NO_SOLUTION,   // the search ran to its end without a solution
+        TIMEOUT,       // cut short by SolveOptions.timeLimitMillis
+        LIMIT,         // cut short by a node, step or round limit
+        CANCELLED      // cut short by the cancellation token or a thread interrupt
+    }
+
+    // one array of variables, simple (fields == null) or of structs
+    public static final class VariableArray {
+        public final String name;
+        public final int size;
+        public final String[] fields;     // schema order, null for an array of simple variables
+        public final int firstId;
+
+        VariableArray(String name, int size, String[] fields, int firstId) {
+            this.name = name;
+            this.size = size;
+            this.fields = fields;
+            this.firstId = firstId;
+        }
+
+        public int width() {
+            return (fields == null) ? 1 : fields.length;
+        }
+
+        public int id(int index, int field) {
+            return firstId + index * width() + field;
+        }
+    }
+
+    // the variables of a run: their arrays, domains and names
+    public static final class Variables {
+        private final List<VariableArray> arrays;
+        private final String[][] domains;        // per variable id, shared with the interpreter
+        private String[] names;                  // built on first use
+
+        Variables(List<VariableArray> arrays, String[][] domains) {
+            this.arrays = Collections.unmodifiableList(new ArrayList<>(arrays));
+            this.domains = domains;
+        }
+
+        public int count() {
+            return domains.length;
+        }
+
+        public List<VariableArray> arrays() {
+            return arrays;
+        }
+
+        public String[] domain(int id) {
+            return domains[id].clone();
+        }
+
+        // e.g. Parties[0].b
+        public String name(int id) {
+            if (names == null) names = new String[domains.length];
+            if (names[id] == null) {
+                for (VariableArray a : arrays) {
+                    int offset = id - a.firstId;
+                    if (offset < 0 || offset >= a.size * a.width()) continue;
+                    int index = offset / a.width();
+                    String base = a.name + "[" + index + "]";
+                    names[id] = (a.fields == null) ? base : base + "." + a.fields[offset % a.width()];
+                    break;
+                }
+            }
+            return names[id];
+        }
+
+        // the choice a value index stands for; out-of-range indices clamp like the interpreter's
+        public String valueString(int id, int value) {
+            String[] domain = domains[id];
+            if (domain == null || domain.length == 0) return "";
+            return domain[Math.max(0, Math.min(value, domain.length - 1))];
+        }
+    }
+
+    private final Status status;
+    private final SolveOptions.Mode mode;
+
+    private final long solutionCount;
+    private final BigInteger rawSolutionCount;
+    private final boolean symmetryReduced;
+
+    private final int[] assignment;          // first solution or best assignment, else null
+    private final int violatedRules;         // of the best assignment, -1 when not applicable
+
+    private final Variables variables;
+
+    // statistics
+    private final String backend;
+    private final long elapsedNanos;
+    private final long nodes;
+    private final long failures;
+    private final long restarts;
+    private final long steps;
+    private final int discrepancies;
+
+    SolveResult(Status status, SolveOptions.Mode mode,
+                long solutionCount, BigInteger rawSolutionCount, boolean symmetryReduced,
+                int[] assignment, int violatedRules, Variables variables,
+                String backend, long elapsedNanos, long nodes, long failures, long restarts,
+                long steps, int discrepancies) {
+        this.status = status;
+        this.mode = mode;
+        this.solutionCount = solutionCount;
+        this.rawSolutionCount = rawSolutionCount;
+        this.symmetryReduced = symmetryReduced;
+        this.assignment = assignment;
+        this.violatedRules = violatedRules;
+        this.variables = variables;
+        this.backend = backend;
+        this.elapsedNanos = elapsedNanos;
+        this.nodes = nodes;
+        this.failures = failures;
+        this.restarts = restarts;
+        this.steps = steps;
+        this.discrepancies = discrepancies;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public SolveOptions.Mode mode() {
+        return mode;
+    }
+
+    // true when a limit ended the search early
+    public boolean isStopped() {
+        return status == Status.TIMEOUT || status == Status.LIMIT || status == Status.CANCELLED;
+    }
+
+    // verified solutions; after symmetry breaking, one per class of interchangeable solutions
+    public long solutionCount() {
+        return solutionCount;
+    }
+
+    // solutions including the ones symmetry breaking skipped
+    public BigInteger rawSolutionCount() {
+        return rawSolutionCount;
+    }
+
+    // true when symmetry breaking was applied, so the two counts can differ
+    public boolean isSymmetryReduced() {
+        return symmetryReduced;
+    }
+
+    public boolean hasAssignment() {
+        return assignment != null;
+    }
+
+    // the first solution (FIRST and ALL modes) or the best assignment of an incomplete search
+    public int[] assignment() {
+        return (assignment == null) ? null : assignment.clone();
+    }
+
+    public int value(int id) {
+        return assignment[id];
+    }
+
+    // rules the best assignment breaks, -1 unless an incomplete search ended without a solution
+    public int violatedRules() {
+        return violatedRules;
+    }
+
+    // the stored array itself, for renderers in this package; never modify it
+    int[] assignmentValues() {
+        return assignment;
+    }
+
+    // ---------- variables ----------
+
+    public Variables variables() {
+        return variables;
+    }
+
+    public int variableCount() {
+        return variables.count();
+    }
+
+    public List<VariableArray> arrays() {
+        return variables.arrays();
+    }
+
+    public String[] domain(int id) {
+        return variables.domain(id);
+    }
+
+    public String name(int id) {
+        return variables.name(id);
+    }
+
+    public String valueString(int id, int value) {
+        return variables.valueString(id, value);
+    }
+
+    public String valueString(int id) {
+        return valueString(id, assignment[id]);
+    }
+
+    // ---------- statistics ----------
+
+    // "search", "logic-grid", "dlx", "local-search", "lns" or "presolve"
+    public String backend() {
+        return backend;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    // search nodes over all backends
+    public long nodes() {
+        return nodes;
+    }
+
+    public long failures() {
+        return failures;
+    }
+
+    public long restarts() {
+        return restarts;
+    }
+
+    // local search moves or LNS rounds
+    public long steps() {
+        return steps;
+    }
+
+    // deviations from the heuristic on the path to the last solution, -1 when not tracked
+    public int discrepancies() {
+        return discrepancies;
+    }
+}
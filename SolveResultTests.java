@@ -0,0 +1,116 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SolveResultTests {
+    private static final String CODE = "C = {R, G}\n" +
+            "P = [C a, C b]\n" +
+            "var Ps : P[1]\n" +
+            "var X : C[1]\n" +
+            "Ps[0].a != Ps[0].b\n" +
+            "X[0] = Ps[0].b\n";
+
+    @Test
+    public void firstResultDescribesAssignment() throws Exception {
+        SolveResult result = solve(CODE, SolveOptions.Mode.FIRST);
+        Assertions.assertEquals(SolveResult.Status.SUCCESS, result.status());
+        Assertions.assertEquals(SolveOptions.Mode.FIRST, result.mode());
+        Assertions.assertFalse(result.isStopped());
+        Assertions.assertTrue(result.hasAssignment());
+        Assertions.assertEquals(1, result.solutionCount());
+        Assertions.assertEquals(-1, result.violatedRules());
+        Assertions.assertEquals("search", result.backend());
+        Assertions.assertTrue(result.elapsedNanos() >= 0);
+
+        Assertions.assertEquals(3, result.variableCount());
+        Assertions.assertEquals(2, result.arrays().size());
+        int a = id(result, "Ps[0].a"), b = id(result, "Ps[0].b"), x = id(result, "X[0]");
+        Assertions.assertNotEquals(result.valueString(a), result.valueString(b));
+        Assertions.assertEquals(result.valueString(b), result.valueString(x));
+        Assertions.assertEquals(result.valueString(x), result.valueString(x, result.value(x)));
+
+        // domains are copies
+        Assertions.assertArrayEquals(new String[] { "R", "G" }, result.domain(a));
+        result.domain(a)[0] = "changed";
+        Assertions.assertEquals("R", result.domain(a)[0]);
+    }
+
+    @Test
+    public void countAndNoSolutionResults() throws Exception {
+        SolveResult count = solve(CODE, SolveOptions.Mode.COUNT);
+        Assertions.assertEquals(SolveResult.Status.SUCCESS, count.status());
+        Assertions.assertEquals(2, count.solutionCount());
+        Assertions.assertEquals(BigInteger.valueOf(2), count.rawSolutionCount());
+
+        SolveResult none = solve(CODE + "X[0] = Ps[0].a\n", SolveOptions.Mode.FIRST);
+        Assertions.assertEquals(SolveResult.Status.NO_SOLUTION, none.status());
+        Assertions.assertFalse(none.hasAssignment());
+        Assertions.assertEquals(0, none.solutionCount());
+        Assertions.assertEquals(3, none.variableCount());
+    }
+
+    // CSV and JSONL after the search, and ALL mode's rows as the search finds them
+    @Test
+    public void rendererWritesRows() throws Exception {
+        Assertions.assertEquals("solution,Ps[0].a,Ps[0].b,X[0]\n1,G,R,R\n",
+                render(SolveOptions.Mode.FIRST, ResultRenderer.Format.CSV));
+        Assertions.assertEquals("{\"solution\":1,\"Ps\":[{\"a\":\"G\",\"b\":\"R\"}],\"X\":[\"R\"]}\n" +
+                        "{\"status\":\"SUCCESS\",\"solutions\":1,\"rawSolutions\":1,\"backend\":\"search\"}\n",
+                render(SolveOptions.Mode.FIRST, ResultRenderer.Format.JSONL));
+        Assertions.assertEquals("solution,Ps[0].a,Ps[0].b,X[0]\n1,G,R,R\n2,R,G,G\n",
+                render(SolveOptions.Mode.ALL, ResultRenderer.Format.CSV));
+        Assertions.assertEquals("SOLUTION 1:\nPs[0].a = G\nPs[0].b = R\n\n" +
+                        "SOLUTION 2:\nPs[0].a = R\nPs[0].b = G\n\n" +
+                        "FOUND 2 SOLUTIONS.\n",
+                render(SolveOptions.Mode.ALL, ResultRenderer.Format.TEXT));
+    }
+
+    // the sink hears of the variables first, then of each solution in order
+    @Test
+    public void sinkSeesEverySolution() throws Exception {
+        var ast = new NushaFall2025Parser().Nusha(new Lexer(CODE).Lex()).orElseThrow();
+        SolveOptions options = new SolveOptions();
+        options.mode = SolveOptions.Mode.ALL;
+        List<String> events = new ArrayList<>();
+        SolveResult result = new Interpreter().Solve(ast, options, new SolutionSink() {
+            public void begin(SolveResult.Variables variables) {
+                events.add("begin " + variables.count());
+            }
+
+            public void solution(long number, int[] values) {
+                events.add(number + " " + Arrays.toString(values));
+            }
+        });
+        Assertions.assertEquals(List.of("begin 3", "1 [0, 1, 0]", "2 [1, 0, 1]"), events);
+        Assertions.assertEquals(2, result.solutionCount());
+    }
+
+    // ALL mode streams through the renderer; the statistics that vary between runs are cut
+    private static String render(SolveOptions.Mode mode, ResultRenderer.Format format) throws Exception {
+        var ast = new NushaFall2025Parser().Nusha(new Lexer(CODE).Lex()).orElseThrow();
+        SolveOptions options = new SolveOptions();
+        options.mode = mode;
+        StringWriter out = new StringWriter();
+        ResultRenderer renderer = new ResultRenderer(out, format);
+        renderer.render(new Interpreter().Solve(ast, options, renderer));
+        return out.toString().replaceAll(",\"nodes\":\\d+,\"millis\":\\d+", "");
+    }
+
+    private static int id(SolveResult result, String name) {
+        for (int id = 0; id < result.variableCount(); id++)
+            if (result.name(id).equals(name)) return id;
+        throw new AssertionError("no variable " + name);
+    }
+
+    private static SolveResult solve(String code, SolveOptions.Mode mode) throws Exception {
+        var ast = new NushaFall2025Parser().Nusha(new Lexer(code).Lex()).orElseThrow();
+        SolveOptions options = new SolveOptions();
+        options.mode = mode;
+        return new Interpreter().Solve(ast, options);
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+/**
+ * Dense int ids for names: the first distinct name interned gets 0, the next 1, and so on.
+ *
+ * The Lexer interns every identifier as it reads it, straight from the source characters, so a
+ * name seen before costs a hash probe and no String. The parser's values are then the table's
+ * shared Strings, and the Interpreter keeps its per-name data in arrays indexed by id.
+ * Not thread-safe.
+ */
+public final class SymbolTable {
+    private String[] names = new String[64];
+    private int count = 0;
+
+    // open addressing: slot -> id + 1 (0 = empty), with each id's hash kept for rehashing
+    private int[] slots = new int[128];
+    private int[] hashes = new int[64];
+
+    public int size() {
+        return count;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    // id of name, adding it when new
+    public int intern(CharSequence name) {
+        return intern(name, 0, name.length());
+    }
+
+    // id of text[start, start + length), adding it when new
+    public int intern(CharSequence text, int start, int length) {
+        int hash = hash(text, start, length);
+        int mask = slots.length - 1;
+        for (int s = hash & mask; ; s = (s + 1) & mask) {
+            int id = slots[s] - 1;
+            if (id < 0) {
+                id = add(text.subSequence(start, start + length).toString(), hash);
+                slots[s] = id + 1;
+                if (count * 2 > slots.length) rehash();
+                return id;
+            }
+            if (hashes[id] == hash && matches(names[id], text, start, length)) return id;
+        }
+    }
+
+    // id of name, or -1 when it was never interned
+    public int find(CharSequence name) {
+        int hash = hash(name, 0, name.length());
+        int mask = slots.length - 1;
+        for (int s = hash & mask; ; s = (s + 1) & mask) {
+            int id = slots[s] - 1;
+            if (id < 0) return -1;
+            if (hashes[id] == hash && matches(names[id], name, 0, name.length())) return id;
+        }
+    }
+
+    private int add(String name, int hash) {
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        names[count] = name;
+        hashes[count] = hash;
+        return count++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < count; id++) {
+            int s = hashes[id] & mask;
+            while (slots[s] != 0) s = (s + 1) & mask;
+            slots[s] = id + 1;
+        }
+    }
+
+    // String.hashCode of the characters, spread so low bits differ for similar names
+    private static int hash(CharSequence text, int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i++) h = 31 * h + text.charAt(i);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String name, CharSequence text, int start, int length) {
+        if (name.length() != length) return false;
+        for (int i = 0; i < length; i++)
+            if (name.charAt(i) != text.charAt(start + i)) return false;
+        return true;
+    }
+}
@@ -10,6 +10,14 @@ public class SyntaxErrorException extends Exception {
         this.charPosition = charPosition;
     }
 
+    // without a stack trace when stackTrace is false: the parser throws these to back out of an
+    // item, and filling in the trace was most of the cost of a failed parse
+    public SyntaxErrorException(String message, int lineNumber, int charPosition, boolean stackTrace) {
+        super(message, null, false, stackTrace);
+        this.lineNumber = lineNumber;
+        this.charPosition = charPosition;
+    }
+
     public SyntaxErrorException(Token first, Token second, int lineNumber, int charPosition) throws SyntaxErrorException {
         this.lineNumber = lineNumber;
         this.charPosition = charPosition;
@@ -27,6 +35,14 @@ public class SyntaxErrorException extends Exception {
         }
     }
 
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getCharPosition() {
+        return charPosition;
+    }
+
     @Override
     public String toString() {
         return "Error at line " + lineNumber + " at character " + charPosition + " : " + super.toString();
@@ -1,31 +1,180 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Character source for the Lexer: a CharSequence, a Reader or a memory-mapped file.
+ *
+ * Input that does not end with a newline gets one virtual '\n' past its last character; the
+ * text itself is never copied to add it. A Reader is read in chunks as the lexer advances and
+ * only the current line is kept, so getText() is null for it and values come from substring().
+ */
 public class TextManager {
-    private final String content;
+    private static final int CHUNK = 1 << 16;
+
+    private final CharSequence content;  // null for a Reader
+    private int length;                  // real characters, not counting the virtual newline
+    private boolean virtualNewline;
     private int position = 0;
 
-    public TextManager(String content) {
-        if (content.isEmpty() || content.charAt(content.length() - 1) != '\n') {
-            content += "\n";
-        }
+    // Reader input: buffer holds characters [bufferStart, bufferStart + buffered)
+    private final Reader reader;
+    private char[] buffer;
+    private int bufferStart = 0;
+    private int buffered = 0;
+    private int lineStart = 0;           // first character of the current line, kept on refill
+    private char last = '\0';            // last character read
+    private boolean eof;
+
+    public TextManager(CharSequence content) {
         this.content = content;
+        this.reader = null;
+        this.eof = true;
+        this.length = content.length();
+        this.virtualNewline = length == 0 || content.charAt(length - 1) != '\n';
+    }
+
+    public TextManager(Reader reader) {
+        this.content = null;
+        this.reader = reader;
+        this.buffer = new char[CHUNK];
+        this.eof = false;
+    }
+
+    // Map the whole file; ASCII is read in place, anything else is decoded as UTF-8 once
+    public TextManager(FileChannel file) throws IOException {
+        this(mapped(file));
+    }
+
+    private static CharSequence mapped(FileChannel file) throws IOException {
+        MappedByteBuffer bytes = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        for (int i = 0; i < bytes.limit(); i++)
+            if (bytes.get(i) < 0) return StandardCharsets.UTF_8.decode(bytes);
+        return new AsciiText(bytes, 0, bytes.limit());
     }
 
     public boolean isAtEnd() {
-        return position >= content.length();
+        return !inText(position);
     }
 
     public char PeekCharacter() {
-        if (isAtEnd()) return '\0';
-        return content.charAt(position);
+        if (content != null && position < length) return content.charAt(position);   // fast path
+        return charAt(position);
     }
 
     public char PeekCharacter(int offset) {
-        int target = position + offset;
-        if (target >= content.length()) return '\0';
-        return content.charAt(target);
+        return charAt(position + offset);
+    }
+
+    // offset of the next character
+    public int getPosition() {
+        return position;
+    }
+
+    // the whole input when it is held in memory (without the virtual newline), null for a Reader
+    public CharSequence getText() {
+        return content;
+    }
+
+    // characters [start, end) of the input; with a Reader only the current line is available
+    public String substring(int start, int end) {
+        if (content != null) return content.subSequence(start, end).toString();
+        return new String(buffer, start - bufferStart, end - start);
+    }
+
+    // true when the input at [start, start + length) is exactly s
+    public boolean regionEquals(int start, int length, String s) {
+        if (length != s.length()) return false;
+        for (int i = 0; i < length; i++)
+            if (charAt(start + i) != s.charAt(i)) return false;
+        return true;
     }
 
     public char GetCharacter() {
+        if (content != null && position < length) return content.charAt(position++);
         if (isAtEnd()) return '\0';
-        return content.charAt(position++);
+        char c = charAt(position++);
+        if (c == '\n') lineStart = position;
+        return c;
+    }
+
+    // the character at offset i, '\n' for the virtual newline and '\0' past the end
+    private char charAt(int i) {
+        if (!inText(i)) return '\0';
+        if (i == length) return '\n';
+        return (content != null) ? content.charAt(i) : buffer[i - bufferStart];
+    }
+
+    // true when offset i is inside the input, the virtual newline included
+    private boolean inText(int i) {
+        while (!eof && i >= bufferStart + buffered) readMore();
+        return i < length + (virtualNewline ? 1 : 0);
+    }
+
+    private void readMore() {
+        // drop everything before the current line, then grow if the line fills the buffer
+        int keep = lineStart - bufferStart;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, buffered - keep);
+            bufferStart = lineStart;
+            buffered -= keep;
+        }
+        if (buffered == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+        int n;
+        try {
+            n = reader.read(buffer, buffered, buffer.length - buffered);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (n < 0) {
+            eof = true;
+            length = bufferStart + buffered;
+            virtualNewline = length == 0 || last != '\n';
+            return;
+        }
+        if (n > 0) last = buffer[buffered + n - 1];
+        buffered += n;
+        length = bufferStart + buffered;
+    }
+
+    // A file of single-byte characters read straight from the mapping
+    private static final class AsciiText implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiText(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiText(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] b = new byte[length];
+            bytes.get(offset, b);
+            return new String(b, StandardCharsets.US_ASCII);
+        }
     }
 }
@@ -0,0 +1,197 @@
+import AST.Token;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Tokens as parallel int arrays instead of one object per token: type, line and column of
+ * token i are types[i], lines[i] and columns[i].
+ *
+ * Tokens lexed from source keep their value as a slice (start, length) of that source and a
+ * String is only made when value(i) is asked for. Tokens added with an explicit value, e.g.
+ * copied from a LinkedList<Token>, keep it in a String array. Identifiers interned in a
+ * SymbolTable keep only their symbol id. Punctuation has no value.
+ */
+public final class TokenBuffer {
+    private static final Token.TokenTypes[] TYPES = Token.TokenTypes.values();
+
+    private final CharSequence source;   // null when every value is explicit
+    private final SymbolTable symbolTable; // null when no token is interned
+
+    private int count = 0;
+    private int[] types;
+    private int[] starts;                // -1 for tokens without a source slice
+    private int[] lengths;
+    private int[] lines;
+    private int[] columns;
+    private String[] values;             // explicit values, allocated on first use
+    private int[] symbols;               // symbol ids, -1 for none; null without a table
+
+    public TokenBuffer(CharSequence source, SymbolTable symbolTable, int capacity) {
+        this.source = source;
+        this.symbolTable = symbolTable;
+        capacity = Math.max(capacity, 16);
+        types = new int[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+        if (symbolTable != null) symbols = new int[capacity];
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this(source, null, capacity);
+    }
+
+    public TokenBuffer(int capacity) {
+        this(null, null, capacity);
+    }
+
+    // Copy of a token list, e.g. for tests that build tokens by hand
+    public static TokenBuffer of(List<Token> tokens) {
+        TokenBuffer buffer = new TokenBuffer(tokens.size());
+        for (Token t : tokens) buffer.add(t.Type, t.Value.orElse(null), t.LineNumber, t.ColumnNumber);
+        return buffer;
+    }
+
+    // ---------- adding ----------
+
+    // a token without value (punctuation, layout)
+    public int add(Token.TokenTypes type, int line, int column) {
+        return add(type, -1, 0, line, column);
+    }
+
+    // a token whose value is source[start, start + length)
+    public int add(Token.TokenTypes type, int start, int length, int line, int column) {
+        if (count == types.length) grow();
+        types[count] = type.ordinal();
+        starts[count] = start;
+        lengths[count] = length;
+        lines[count] = line;
+        columns[count] = column;
+        if (symbols != null) symbols[count] = -1;
+        return count++;
+    }
+
+    // a token whose value is the name of a symbol in this buffer's table
+    public int addSymbol(Token.TokenTypes type, int symbol, int line, int column) {
+        int i = add(type, -1, 0, line, column);
+        symbols[i] = symbol;
+        return i;
+    }
+
+    // a token with an explicit value (null for none)
+    public int add(Token.TokenTypes type, String value, int line, int column) {
+        int i = add(type, -1, 0, line, column);
+        if (value != null) {
+            if (values == null) values = new String[types.length];
+            values[i] = value;
+        }
+        return i;
+    }
+
+    // drop every token before index from; token from becomes token 0
+    public void compact(int from) {
+        int n = count - from;
+        System.arraycopy(types, from, types, 0, n);
+        System.arraycopy(starts, from, starts, 0, n);
+        System.arraycopy(lengths, from, lengths, 0, n);
+        System.arraycopy(lines, from, lines, 0, n);
+        System.arraycopy(columns, from, columns, 0, n);
+        if (values != null) {
+            System.arraycopy(values, from, values, 0, n);
+            Arrays.fill(values, n, count, null);
+        }
+        if (symbols != null) System.arraycopy(symbols, from, symbols, 0, n);
+        count = n;
+    }
+
+    public void clear() {
+        compact(count);
+    }
+
+    // Copy tokens [0, n) of other onto the end: their source slices move by offset, their lines
+    // by lineOffset, and their symbol ids map through remap (other's id -> this buffer's id)
+    public void append(TokenBuffer other, int n, int offset, int lineOffset, int[] remap) {
+        append(other, 0, n, offset, lineOffset, remap);
+    }
+
+    // same for tokens [from, to); a null remap keeps the ids, for a buffer on the same table
+    public void append(TokenBuffer other, int from, int to, int offset, int lineOffset, int[] remap) {
+        for (int i = from; i < to; i++) {
+            int line = other.lines[i] + lineOffset;
+            int symbol = other.symbol(i);
+            if (symbol >= 0) addSymbol(other.type(i), (remap == null) ? symbol : remap[symbol], line, other.columns[i]);
+            else if (other.starts[i] >= 0) add(other.type(i), other.starts[i] + offset, other.lengths[i], line, other.columns[i]);
+            else add(other.type(i), other.value(i), line, other.columns[i]);
+        }
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+        if (values != null) values = Arrays.copyOf(values, capacity);
+        if (symbols != null) symbols = Arrays.copyOf(symbols, capacity);
+    }
+
+    // ---------- reading ----------
+
+    public int size() {
+        return count;
+    }
+
+    public Token.TokenTypes type(int i) {
+        return TYPES[types[i]];
+    }
+
+    public boolean is(int i, Token.TokenTypes type) {
+        return types[i] == type.ordinal();
+    }
+
+    public int line(int i) {
+        return lines[i];
+    }
+
+    public int column(int i) {
+        return columns[i];
+    }
+
+    public boolean hasValue(int i) {
+        return starts[i] >= 0 || (values != null && values[i] != null) || symbol(i) >= 0;
+    }
+
+    // the token's symbol id, or -1 when it was not interned
+    public int symbol(int i) {
+        return (symbols == null) ? -1 : symbols[i];
+    }
+
+    // the table symbol ids refer to (null when none)
+    public SymbolTable symbolTable() {
+        return symbolTable;
+    }
+
+    // the token's text, or null for punctuation
+    public String value(int i) {
+        if (symbols != null && symbols[i] >= 0) return symbolTable.name(symbols[i]);
+        if (starts[i] >= 0) return source.subSequence(starts[i], starts[i] + lengths[i]).toString();
+        return (values == null) ? null : values[i];
+    }
+
+    // token i as an AST.Token (a new object every call)
+    public Token token(int i) {
+        String v = value(i);
+        return (v == null) ? new Token(type(i), lines[i], columns[i]) : new Token(type(i), lines[i], columns[i], v);
+    }
+
+    // Adapter for callers that want the classic list
+    public LinkedList<Token> toLinkedList() {
+        LinkedList<Token> list = new LinkedList<>();
+        for (int i = 0; i < count; i++) list.add(token(i));
+        return list;
+    }
+}
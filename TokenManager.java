@@ -1,4 +1,5 @@
 import AST.*;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Optional;
 
@@ -9,31 +10,123 @@ import java.util.Optional;
  * - Done() -> boolean
  * - getCurrentLine(), getCurrentColumnNumber() (and getLine()/getColumn() for compatibility)
  *
+ * Tokens sit in a TokenBuffer behind a cursor, so Peek(i) and MatchAndRemove are O(1). The
+ * parser only uses the index and type queries (PeekIs, Match, MatchIndex, MatchValue), which
+ * read the buffer's int arrays and make a String only for tokens that carry a value.
+ *
+ * The Token-returning methods hand out one object per token: Peek(0) and the MatchAndRemove
+ * after it return the same Token. Built from a list or an array, those are the caller's own
+ * Token objects, as before. Built from a buffer or a lexer, each Token is made the first time
+ * it is asked for, and tokens nobody asks for never become objects.
+ *
+ * Built on a Lexer, the tokens are pulled as the parser looks ahead: the buffer is a window
+ * that gets refilled on demand and drops the consumed tokens, so it stays a few tokens long
+ * however long the input is. A lexing error ends the stream early; Finish() throws it.
+ *
  * Works with AST.Token as provided.
  */
 public class TokenManager {
-    private final LinkedList<Token> tokens;
+    private static final int WINDOW = 64;   // consumed tokens kept before the window is compacted
+
+    private final TokenBuffer tokens;
+    private int position = 0;
+    private int end = Integer.MAX_VALUE;   // exclusive bound for a token range of a buffer
+
+    // Token objects already handed out, by buffer index; null until the first one
+    private Token[] built;
+
+    // streaming: the lexer still to read from (null once drained) and its error, if any
+    private Lexer source;
+    private SyntaxErrorException sourceError;
 
-    // Accept tokens list from parser
+    // Accept tokens list from parser; the list is read once and not kept
     public TokenManager(LinkedList<Token> tokens) {
-        // keep a defensive copy to avoid external mutation
-        this.tokens = (tokens == null) ? new LinkedList<>() : new LinkedList<>(tokens);
+        this.tokens = TokenBuffer.of((tokens == null) ? new LinkedList<>() : tokens);
+        if (tokens != null) this.built = tokens.toArray(new Token[0]);
+    }
+
+    // Copy the tokens of an array
+    public TokenManager(Token[] tokens) {
+        this.tokens = TokenBuffer.of((tokens == null) ? new LinkedList<>() : Arrays.asList(tokens));
+        if (tokens != null) this.built = tokens.clone();
+    }
+
+    // Read a lexed buffer as is (the caller must not add to it while parsing)
+    public TokenManager(TokenBuffer tokens) {
+        this.tokens = (tokens == null) ? new TokenBuffer(0) : tokens;
+    }
+
+    // Only tokens [from, to) of the buffer, as if the rest did not exist
+    public TokenManager(TokenBuffer tokens, int from, int to) {
+        this.tokens = tokens;
+        this.position = from;
+        this.end = to;
+    }
+
+    // Pull tokens from the lexer while parsing
+    public TokenManager(Lexer source) {
+        this.tokens = source.newBuffer(WINDOW * 2);
+        this.source = source;
     }
 
     // No-arg constructor (safe default)
     public TokenManager() {
-        this.tokens = new LinkedList<>();
+        this.tokens = new TokenBuffer(0);
+    }
+
+    // True when token index i of the buffer exists, lexing more if needed
+    private boolean has(int i) {
+        while (i >= tokens.size() && source != null) {
+            if (position >= WINDOW) {
+                compact(position);
+                i -= position;
+                position = 0;
+            }
+            try {
+                if (!source.LexMore(tokens)) source = null;
+            } catch (SyntaxErrorException ex) {
+                sourceError = ex;
+                source = null;
+            }
+        }
+        return i < tokens.size() && i < end;
+    }
+
+    // Read the rest of a streaming input and throw the lexing error, if there was one
+    public void Finish() throws SyntaxErrorException {
+        while (source != null) {
+            compact(tokens.size());
+            position = 0;
+            has(0);
+        }
+        if (sourceError != null) throw sourceError;
+    }
+
+    // drop the tokens before buffer index from, with their Token objects
+    private void compact(int from) {
+        tokens.compact(from);
+        if (built == null) return;
+        int kept = Math.max(built.length - from, 0);
+        if (kept > 0) System.arraycopy(built, from, built, 0, kept);
+        Arrays.fill(built, kept, built.length, null);
+    }
+
+    // the one Token for buffer index i
+    private Token token(int i) {
+        if (built == null || i >= built.length)
+            built = Arrays.copyOf((built == null) ? new Token[0] : built, Math.max(i + 1, Math.min(tokens.size(), end)));
+        if (built[i] == null) built[i] = tokens.token(i);
+        return built[i];
     }
 
     // True when there are no tokens left
     public boolean Done() {
-        return tokens.isEmpty();
+        return !has(position);
     }
 
     // Return the optional token at offset i (does not remove)
     public Optional<Token> Peek(int i) {
-        if (i < 0 || i >= tokens.size()) return Optional.empty();
-        return Optional.of(tokens.get(i));
+        return Optional.ofNullable(PeekOrNull(i));
     }
 
     // Convenience: Peek the first (0)
@@ -41,37 +134,81 @@ public class TokenManager {
         return Peek(0);
     }
 
+    // The token at offset i, or null past the end
+    public Token PeekOrNull(int i) {
+        if (i < 0 || !has(position + i)) return null;
+        return token(position + i);
+    }
+
+    // True when the token at offset i exists and has type t
+    public boolean PeekIs(int i, Token.TokenTypes t) {
+        return i >= 0 && has(position + i) && tokens.is(position + i, t);
+    }
+
     // If the next token has the requested type, remove and return it
     public Optional<Token> MatchAndRemove(Token.TokenTypes t) {
-        if (tokens.isEmpty()) return Optional.empty();
-        Token head = tokens.peekFirst();
-        if (head.Type == t) {
-            return Optional.of(tokens.removeFirst());
-        } else {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(MatchOrNull(t));
+    }
+
+    // Same as MatchAndRemove, with null for no match
+    public Token MatchOrNull(Token.TokenTypes t) {
+        if (!PeekIs(0, t)) return null;
+        return token(position++);
+    }
+
+    // If the next token has the requested type, remove it and return its index in the buffer,
+    // else -1. A streaming manager moves its tokens down as it reads ahead, so use the index
+    // (line(i), column(i), value(i)) before the next Peek or Match.
+    public int MatchIndex(Token.TokenTypes t) {
+        if (!PeekIs(0, t)) return -1;
+        return position++;
+    }
+
+    // The buffer index refers to, for MatchIndex results
+    public TokenBuffer buffer() {
+        return tokens;
+    }
+
+    // If the next token has the requested type, remove it and return true
+    public boolean Match(Token.TokenTypes t) {
+        if (!PeekIs(0, t)) return false;
+        position++;
+        return true;
+    }
+
+    // If the next token has the requested type, remove it and return its value, else null
+    public String MatchValue(Token.TokenTypes t) {
+        if (!PeekIs(0, t)) return null;
+        return tokens.value(position++);
+    }
+
+    // Remove the next token without building it; false when there is none
+    public boolean Skip() {
+        if (Done()) return false;
+        position++;
+        return true;
     }
 
     // Provide a simple consume() used in some variants (removes head unconditionally)
     public Optional<Token> ConsumeIfAny() {
-        if (tokens.isEmpty()) return Optional.empty();
-        return Optional.of(tokens.removeFirst());
+        if (Done()) return Optional.empty();
+        return Optional.of(token(position++));
     }
 
     // Provide check without removing
     public boolean Check(Token.TokenTypes t) {
-        return !tokens.isEmpty() && tokens.peekFirst().Type == t;
+        return PeekIs(0, t);
     }
 
     // Compatibility names found in some parser versions:
     public int getCurrentLine() {
-        if (tokens.isEmpty()) return -1;
-        return tokens.peekFirst().LineNumber;
+        if (Done()) return -1;
+        return tokens.line(position);
     }
 
     public int getCurrentColumnNumber() {
-        if (tokens.isEmpty()) return -1;
-        return tokens.peekFirst().ColumnNumber;
+        if (Done()) return -1;
+        return tokens.column(position);
     }
 
     // Some older code asked for getLine() / getColumn()
@@ -83,9 +220,14 @@ public class TokenManager {
         return getCurrentColumnNumber();
     }
 
-    // For debugging
+    // For debugging: the tokens not consumed yet
     @Override
     public String toString() {
-        return tokens.toString();
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = position; i < Math.min(tokens.size(), end); i++) {
+            if (i > position) sb.append(", ");
+            sb.append(token(i));
+        }
+        return sb.append(']').toString();
     }
 }
@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * Undo log for backtracking search.
+ *
+ * Every change to a domain word or an assigned value is recorded as one primitive entry
+ * (variable id, word index, old word, old value) before it happens. A checkpoint is just the
+ * current log size, so restoring walks the log backwards and writes the old state back.
+ * Nothing is copied on branching and, once the arrays have grown to the search depth,
+ * nothing is allocated either.
+ */
+public class Trail {
+    private int[] vars;
+    private int[] wordIndex;
+    private long[] oldWords;
+    private int[] oldValues;
+    private int size = 0;
+
+    // open checkpoints, innermost last
+    private int[] marks;
+    private int depth = 0;
+
+    // bumped on every checkpoint so a word is saved at most once per level
+    private int stamp = 0;
+
+    public Trail(int initialCapacity) {
+        int cap = Math.max(16, initialCapacity);
+        vars = new int[cap];
+        wordIndex = new int[cap];
+        oldWords = new long[cap];
+        oldValues = new int[cap];
+        marks = new int[16];
+    }
+
+    // Open a new level and return its mark (the level depth before opening)
+    public int checkpoint() {
+        if (depth == marks.length) marks = Arrays.copyOf(marks, depth * 2);
+        marks[depth++] = size;
+        stamp++;
+        return depth - 1;
+    }
+
+    // Current stamp; DomainStore compares it with the stamp of the last save of a word
+    int stamp() {
+        return stamp;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Record the state of one domain word (and the variable's value) before it changes
+    void save(int var, int word, long oldWord, int oldValue) {
+        if (size == vars.length) grow();
+        vars[size] = var;
+        wordIndex[size] = word;
+        oldWords[size] = oldWord;
+        oldValues[size] = oldValue;
+        size++;
+    }
+
+    // Undo everything recorded since checkpoint `level` was opened, and close it
+    void restore(int level, DomainStore store) {
+        if (level < 0 || level >= depth) return;
+        int target = marks[level];
+        while (size > target) {
+            size--;
+            store.undo(vars[size], wordIndex[size], oldWords[size], oldValues[size]);
+        }
+        depth = level;
+        stamp++;
+    }
+
+    private void grow() {
+        int cap = vars.length * 2;
+        vars = Arrays.copyOf(vars, cap);
+        wordIndex = Arrays.copyOf(wordIndex, cap);
+        oldWords = Arrays.copyOf(oldWords, cap);
+        oldValues = Arrays.copyOf(oldValues, cap);
+    }
+}
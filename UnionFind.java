@@ -0,0 +1,36 @@
+/**
+ * Disjoint sets over dense ids 0..n-1, with path halving.
+ *
+ * The root of a set is always its largest id, so a caller that walks ids from the top
+ * meets each representative before the other members of its class.
+ */
+public class UnionFind {
+    private final int[] parent;
+
+    public UnionFind(int n) {
+        parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+    }
+
+    public int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    // Merge the sets of a and b; false when they were already one set
+    public boolean union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) return false;
+        if (ra < rb) parent[ra] = rb;
+        else parent[rb] = ra;
+        return true;
+    }
+
+    public boolean isRepresentative(int x) {
+        return parent[x] == x;
+    }
+}
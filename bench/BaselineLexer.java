@@ -0,0 +1,171 @@
+import AST.Token.TokenTypes;
+
+import java.util.Stack;
+
+/**
+ * The Lexer as it was before the character-class tables, kept as LexerBenchmark's baseline and
+ * used nowhere else. It tests every character with Character.isLetterOrDigit / isDigit, matches
+ * keywords with regionEquals against "var" and "unique", and does not intern identifiers. Only
+ * the whole-input path is kept.
+ */
+public class BaselineLexer {
+    private final TextManager tm;
+    private final Stack<Integer> indentStack = new Stack<>();
+
+    private TokenBuffer tokens;          // where the current LexMore call appends
+    private boolean finished = false;    // end-of-input DEDENTs and NEWLINE emitted
+
+    private int line = 1;
+    private int charPos = 1;
+
+    public BaselineLexer(String input) {
+        this(new TextManager(input));
+    }
+
+    // lex a CharSequence, Reader or mapped file wrapped in a TextManager
+    public BaselineLexer(TextManager text) {
+        this.tm = text;
+        indentStack.push(0); // base indent
+    }
+
+    // Lex everything into parallel arrays; identifier and number values stay slices of the input
+    public TokenBuffer LexBuffer() throws SyntaxErrorException {
+        TokenBuffer all = newBuffer((tm.getText() == null) ? 1024 : tm.getText().length() / 4);
+        while (LexMore(all)) { /* drain */ }
+        return all;
+    }
+
+    // An empty buffer whose values can refer to this lexer's input (copies for a Reader)
+    public TokenBuffer newBuffer(int capacity) {
+        return new TokenBuffer(tm.getText(), capacity);
+    }
+
+    // Append the next token, or the few a line break or the end of input produces, to out.
+    // Returns false, adding nothing, once the input is used up.
+    public boolean LexMore(TokenBuffer out) throws SyntaxErrorException {
+        this.tokens = out;
+        int before = out.size();
+        while (!tm.isAtEnd() && out.size() == before) {
+            char c = tm.PeekCharacter();
+
+            if (c == '\n') {
+                tm.GetCharacter();
+                tokens.add(TokenTypes.NEWLINE, line, charPos);
+                line++;
+                charPos = 1;
+
+                int spaces = 0;
+                while (!tm.isAtEnd() && (tm.PeekCharacter() == ' ' || tm.PeekCharacter() == '\t')) {
+                    spaces += (tm.PeekCharacter() == '\t') ? 4 : 1;
+                    tm.GetCharacter();
+                }
+
+                if (tm.isAtEnd() || tm.PeekCharacter() == '\n') continue; // skip blank line
+
+                if (spaces % 4 != 0)
+                    throw new SyntaxErrorException("Indentation must be multiple of 4", line, charPos);
+
+                int currentIndent = indentStack.peek();
+                if (spaces > currentIndent) {
+                    indentStack.push(spaces);
+                    tokens.add(TokenTypes.INDENT, line, 1);
+                } else if (spaces < currentIndent) {
+                    while (spaces < indentStack.peek()) {
+                        indentStack.pop();
+                        tokens.add(TokenTypes.DEDENT, line, 1);
+                    }
+                    if (spaces != indentStack.peek())
+                        throw new SyntaxErrorException("Unmatched indentation", line, charPos);
+                }
+                charPos = spaces + 1;
+                continue;
+            }
+
+            if (c == ' ' || c == '\t' || c == '\r') {
+                tm.GetCharacter();
+                charPos++;
+                continue;
+            }
+
+            char next = tm.PeekCharacter(1);
+            if (c == '=' && next == '>') {
+                tm.GetCharacter(); tm.GetCharacter();
+                tokens.add(TokenTypes.YIELDS, line, charPos);
+                charPos += 2;
+                continue;
+            }
+            if (c == '!' && next == '=') {
+                tm.GetCharacter(); tm.GetCharacter();
+                tokens.add(TokenTypes.NOTEQUAL, line, charPos);
+                charPos += 2;
+                continue;
+            }
+
+            switch (c) {
+                case '=': emit(TokenTypes.EQUAL); continue;
+                case '.': emit(TokenTypes.DOT); continue;
+                case ',': emit(TokenTypes.COMMA); continue;
+                case ':': emit(TokenTypes.COLON); continue;
+                case '{': emit(TokenTypes.LEFTCURLY); continue;
+                case '}': emit(TokenTypes.RIGHTCURLY); continue;
+                case '[': emit(TokenTypes.LEFTBRACE); continue;
+                case ']': emit(TokenTypes.RIGHTBRACE); continue;
+            }
+
+            if (Character.isLetter(c) || c == '_') {
+                int startPos = charPos;
+                int start = tm.getPosition();
+                while (!tm.isAtEnd() && (Character.isLetterOrDigit(tm.PeekCharacter()) || tm.PeekCharacter() == '_')) {
+                    tm.GetCharacter();
+                    charPos++;
+                }
+                int length = tm.getPosition() - start;
+                TokenTypes type = TokenTypes.IDENTIFIER;
+                if (isWord(start, length, "var")) type = TokenTypes.VAR;
+                else if (isWord(start, length, "unique")) type = TokenTypes.UNIQUE;
+                addValue(type, start, length, startPos);
+                continue;
+            }
+
+            if (Character.isDigit(c)) {
+                int startPos = charPos;
+                int start = tm.getPosition();
+                while (!tm.isAtEnd() && Character.isDigit(tm.PeekCharacter())) {
+                    tm.GetCharacter();
+                    charPos++;
+                }
+                addValue(TokenTypes.NUMBER, start, tm.getPosition() - start, startPos);
+                continue;
+            }
+
+            throw new SyntaxErrorException("Unexpected character: " + c, line, charPos);
+        }
+
+        if (tm.isAtEnd() && !finished) {
+            while (indentStack.size() > 1) {
+                indentStack.pop();
+                tokens.add(TokenTypes.DEDENT, line, 1);
+            }
+            tokens.add(TokenTypes.NEWLINE, line, charPos);
+            finished = true;
+        }
+        return out.size() > before;
+    }
+
+    // true when the input at [start, start + length) is exactly the keyword
+    private boolean isWord(int start, int length, String keyword) {
+        return tm.regionEquals(start, length, keyword);
+    }
+
+    // a token whose value is input[start, start + length): a slice, or a copy for a Reader
+    private void addValue(TokenTypes type, int start, int length, int column) {
+        if (tm.getText() != null) tokens.add(type, start, length, line, column);
+        else tokens.add(type, tm.substring(start, start + length), line, column);
+    }
+
+    private void emit(TokenTypes type) {
+        tokens.add(type, line, charPos);
+        tm.GetCharacter();
+        charPos++;
+    }
+}
@@ -0,0 +1,68 @@
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH throughput of LexBuffer on a generated program of about 20 MB, for the current Lexer and
+ * for BaselineLexer, the lexer before the character-class tables. Kept out of the source root
+ * because it needs the JMH jars; bench/README.md says how to run it.
+ *
+ * The source is ASCII, so each operation lexes size bytes. Besides ops/s, JMH reports the
+ * secondary result "megabytes", the bytes lexed per second divided by 1e6: that line is MB/s.
+ *
+ * JMH was not available where the lexer changes were made, so these figures come from a plain
+ * loop over the same source instead (-Xms2g -Xmx2g, 5 warm-up and 20 timed LexBuffer calls per
+ * JVM, 4 JVMs per lexer, interleaved, on a shared single-core VM). Medians: BaselineLexer
+ * 45-56 MB/s, the Lexer as the tables left it 45-58 MB/s, the current Lexer, which also interns
+ * every identifier into its SymbolTable, 36-42 MB/s. The spread between runs is as large as
+ * the tables' gain.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+    @Param({"20000000"})
+    public int size;
+
+    private String source;
+
+    // bytes lexed in the current iteration, in MB; JMH divides it by the iteration's time
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Setup
+    public void generate() {
+        StringBuilder sb = new StringBuilder("A = {a1, a2, a3, a4}\nB = {b1, b2, b3, b4}\n"
+                + "S = [unique A a, unique B b]\nvar Ss : S[4]\n");
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("Ss[").append(i % 4).append("].a = a1 =>\n    Ss[").append((i + 1) % 4)
+                    .append("].b != b").append(1 + i % 4).append("\n    unique_name").append(i)
+                    .append(" = var_x\n\n");
+        }
+        source = sb.toString();
+    }
+
+    @Benchmark
+    public void lexBuffer(Bytes bytes, Blackhole bh) throws SyntaxErrorException {
+        bh.consume(new Lexer(source).LexBuffer());
+        bytes.megabytes += source.length() / 1e6;
+    }
+
+    @Benchmark
+    public void baselineLexBuffer(Bytes bytes, Blackhole bh) throws SyntaxErrorException {
+        bh.consume(new BaselineLexer(source).LexBuffer());
+        bytes.megabytes += source.length() / 1e6;
+    }
+}